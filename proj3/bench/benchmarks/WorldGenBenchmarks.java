@@ -0,0 +1,266 @@
+package benchmarks;
+
+import core.MstMode;
+import core.Replay;
+import core.SaveGame;
+import core.SaveStore;
+import core.World;
+import core.WorldCache;
+import core.WorldConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tileengine.TETile;
+import tileengine.TileGrids;
+import utils.EdgeList;
+import utils.Room;
+import utils.RoomGraph;
+import utils.UnionFind;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for world generation, the MST pipeline, UnionFind, TETile.toString, grid
+ * hashing, the world cache, save/load and input replay.
+ *
+ * Run them with {@code gradle jmh}; results are written as JSON to
+ * build/reports/jmh/results.json so runs can be compared across builds. Pass JMH options with
+ * -PjmhArgs, e.g. {@code gradle jmh -PjmhArgs='worldGeneration -f 1'} to run only the world
+ * generation benchmarks in a single fork.
+ *
+ * The save benchmark writes and reads a real file in a temporary directory, so running it does
+ * not touch the save files in the working directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WorldGenBenchmarks {
+
+    /** Generation settings; every invocation generates a world from a fresh seed. */
+    @State(Scope.Thread)
+    public static class Generation {
+        @Param({"80x30", "256x256"})
+        public String size;
+
+        @Param({"EXHAUSTIVE", "NEAREST_NEIGHBORS"})
+        public MstMode mode;
+
+        WorldConfig config;
+        Random seeds;
+
+        @Setup
+        public void setup() {
+            String[] dimensions = size.split("x");
+            config = WorldConfig.DEFAULT.withSize(Integer.parseInt(dimensions[0]),
+                    Integer.parseInt(dimensions[1])).withMstMode(mode);
+            seeds = new Random(1);
+        }
+    }
+
+    /** A 1024x1024 world; only with nearest-neighbour candidates, exhaustive is O(n^2) here. */
+    @State(Scope.Thread)
+    public static class LargeGeneration {
+        WorldConfig config = WorldConfig.DEFAULT.withSize(1024, 1024)
+                .withMstMode(MstMode.NEAREST_NEIGHBORS);
+        Random seeds = new Random(1);
+    }
+
+    /** Randomly scattered rooms to build a minimum spanning tree over. */
+    @State(Scope.Thread)
+    public static class Rooms {
+        @Param({"500", "5000"})
+        public int roomCount;
+
+        List<Room> rooms;
+
+        @Setup
+        public void setup() {
+            rooms = randomRooms(roomCount, new Random(2));
+        }
+    }
+
+    /** 500 rooms, few enough for exhaustive candidate edges. */
+    @State(Scope.Thread)
+    public static class FewRooms {
+        List<Room> rooms = randomRooms(500, new Random(2));
+    }
+
+    /** One UnionFind reset before every invocation, as in bulk seed sweeps. */
+    @State(Scope.Thread)
+    public static class Unions {
+        static final int SIZE = 1 << 20;
+        UnionFind unionFind = new UnionFind(SIZE);
+        Random random = new Random(3);
+    }
+
+    /** An 80x30 world as a TETile[][] grid, plus an equal copy. */
+    @State(Scope.Thread)
+    public static class Grid {
+        TETile[][] tiles;
+        TETile[][] same;
+
+        @Setup
+        public void setup() {
+            tiles = new World(new Random(4)).getWorld();
+            same = TETile.copyOf(tiles);
+        }
+    }
+
+    /** A world cache that already holds the requested world. */
+    @State(Scope.Thread)
+    public static class Cache {
+        WorldCache cache = new WorldCache(1 << 20);
+
+        @Setup
+        public void setup() {
+            cache.get(4);
+        }
+    }
+
+    /** A world to save, and a save file in a temporary directory to save it to. */
+    @State(Scope.Thread)
+    public static class Save {
+        Path directory;
+        String filename;
+        World world;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("save-benchmark");
+            filename = directory.resolve(SaveGame.FILENAME).toString();
+            world = new World(new Random(4));
+            for (char key : "ddwwaas".toCharArray()) {
+                world.moveAvatar(key);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(Path.of(filename));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /** A new-game command followed by 100k random moves. */
+    @State(Scope.Thread)
+    public static class Moves {
+        byte[] input = ("n5s" + randomMoves(100_000, new Random(5))).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public World worldGeneration(Generation state) {
+        return new World(new Random(state.seeds.nextLong()), state.config);
+    }
+
+    @Benchmark
+    @Measurement(iterations = 5, time = 5)
+    public World largeWorldGeneration(LargeGeneration state) {
+        return new World(new Random(state.seeds.nextLong()), state.config);
+    }
+
+    @Benchmark
+    public int mstExhaustive(FewRooms state) {
+        EdgeList edges = RoomGraph.allPairEdges(state.rooms);
+        edges.sortInPriorityQueueOrder();
+        return kruskal(edges, new UnionFind(state.rooms.size()));
+    }
+
+    @Benchmark
+    public int mstNearestNeighbors(Rooms state) {
+        EdgeList edges = RoomGraph.nearestNeighborEdges(state.rooms, 8);
+        edges.sortByDistance();
+        return kruskal(edges, new UnionFind(state.rooms.size()));
+    }
+
+    @Benchmark
+    public void unionFindRandomUnions(Unions state, Blackhole blackhole) {
+        UnionFind unionFind = state.unionFind;
+        unionFind.reset(Unions.SIZE);
+        for (int i = 0; i < Unions.SIZE; i++) {
+            blackhole.consume(unionFind.union(state.random.nextInt(Unions.SIZE),
+                    state.random.nextInt(Unions.SIZE)));
+        }
+    }
+
+    @Benchmark
+    public String teTileToString(Grid state) {
+        return TETile.toString(state.tiles);
+    }
+
+    @Benchmark
+    public long tileGridsHash(Grid state) {
+        return TileGrids.hash(state.tiles);
+    }
+
+    @Benchmark
+    public boolean tileGridsEquals(Grid state) {
+        return TileGrids.equals(state.tiles, state.same);
+    }
+
+    @Benchmark
+    public World worldCacheHit(Cache state) {
+        return state.cache.get(4);
+    }
+
+    @Benchmark
+    public SaveGame.Loaded saveRoundTrip(Save state) {
+        SaveGame.save(state.filename, state.world, 4);
+        return SaveGame.load(state.filename);
+    }
+
+    // 不经过AutograderBuddy，它的WorldCache会让之后的每次调用都跳过生成世界；每次都生成世界并回放所有移动
+    @Benchmark
+    public Replay.Result replay100kMoves(Moves state) throws IOException {
+        return Replay.replay(Channels.newChannel(new ByteArrayInputStream(state.input)),
+                SaveStore.inMemory(), 0, null);
+    }
+
+    private static int kruskal(EdgeList edges, UnionFind uf) {
+        int used = 0;
+        for (int i = 0; i < edges.size() && uf.getCount() > 1; i++) {
+            if (uf.union(edges.room1(i), edges.room2(i))) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    private static List<Room> randomRooms(int count, Random random) {
+        int side = (int) Math.sqrt(count * 120.0);
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rooms.add(new Room(random.nextInt(side), random.nextInt(side),
+                    3 + random.nextInt(12), 3 + random.nextInt(9)));
+        }
+        return rooms;
+    }
+
+    private static String randomMoves(int count, Random random) {
+        StringBuilder moves = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            moves.append("wasd".charAt(random.nextInt(4)));
+        }
+        return moves.toString();
+    }
+}
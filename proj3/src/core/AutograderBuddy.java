@@ -4,12 +4,34 @@ import tileengine.TERenderer;
 import tileengine.TETile;
 import tileengine.Tileset;
 
-import java.util.Random;
-import core.Main;
-import core.World;
-import utils.FileUtils;
-
 public class AutograderBuddy {
+    // 同一个种子往往被反复请求。缓存的字节预算等于这么多个默认大小世界的网格，
+    // 每个快照还包括房间（每个16字节），所以实际缓存的世界会比这个数少一些
+    private static final int CACHE_BUDGET_GRIDS = 64;
+    private static final WorldCache WORLDS = new WorldCache(
+            (long) CACHE_BUDGET_GRIDS * World.DEFAULT_WIDTH * World.DEFAULT_HEIGHT);
+    // 与游戏使用相同的存档文件，保存时打印提示，没有存档时退出
+    private static final SaveStore GAME_FILES = new SaveStore() {
+        @Override
+        public void save(World world, long seed) {
+            saveGame(world, seed);
+        }
+
+        @Override
+        public SaveGame.Loaded load() {
+            return loadGame();
+        }
+    };
+    private static volatile SaveStore store = GAME_FILES;
+
+    /**
+     * Changes where ":q" saves and "l" loads, e.g. so that tests do not overwrite the player's
+     * save in the working directory.
+     * @param saveStore the store to use, or null for the game's own save files
+     */
+    public static void setSaveStore(SaveStore saveStore) {
+        store = saveStore == null ? GAME_FILES : saveStore;
+    }
 
     /**
      * Simulates a game, but doesn't render anything or call any StdDraw
@@ -27,116 +49,30 @@ public class AutograderBuddy {
         if (input == null || input.isEmpty()) {
             throw new IllegalArgumentException("Input cannot be null or empty.");
         }
-        if (input.startsWith("N") || input.startsWith("n")) {
-            return handleNewGame(input);
-        } else if (input.startsWith("L") || input.startsWith("l")) {
-            return handleLoadGame(input);
-        } else {
-            throw new IllegalArgumentException("Invalid input format. Must start with 'N,n' or 'L, l'.");
-        }
-    }
-
-    private static TETile[][] handleNewGame(String input) {
-        // 提取种子
-        int seedStartIndex = 1;
-        int seedEndIndex = input.indexOf('s', seedStartIndex);
-        long seed = Long.parseLong(input.substring(seedStartIndex, seedEndIndex));
-
-        // 创建随机生成器
-        Random random = new Random(seed);
-
-        // 创建一个新世界
-        World world = new World(random);
-
-        // 提取移动命令
-        int moveCommandsStartIndex = seedEndIndex + 1;
-        int moveCommandsEndIndex = input.indexOf(':', moveCommandsStartIndex);
-        String moveCommands = moveCommandsEndIndex == -1 ?
-                input.substring(moveCommandsStartIndex) :
-                input.substring(moveCommandsStartIndex, moveCommandsEndIndex);
-
-        // 执行移动命令
-        executeMoveCommands(world, moveCommands);
-
-        // 如果有 :Q 则保存游戏
-        if (moveCommandsEndIndex != -1) {
-            saveGame(world, seed);
-        }
+        // 逐个字符解析输入，不需要截取子串
+        ReplaySession session = new ReplaySession(store, WORLDS);
+        CommandParser parser = new CommandParser(session);
+        parser.accept(input);
+        parser.finish();
 
         // 返回最终的世界状态
-        return world.getWorld();
-    }
-
-    private static TETile[][] handleLoadGame(String input) {
-        // 加载游戏
-        World world = loadGame();
-
-        // 提取移动命令
-        int moveCommandsStartIndex = 1;
-        int moveCommandsEndIndex = input.indexOf(':', moveCommandsStartIndex);
-        String moveCommands = moveCommandsEndIndex == -1 ?
-                input.substring(moveCommandsStartIndex) :
-                input.substring(moveCommandsStartIndex, moveCommandsEndIndex);
-
-        // 执行移动命令
-        executeMoveCommands(world, moveCommands);
-
-        // 如果有 :Q 则保存游戏
-//        if (moveCommandsEndIndex != -1) {
-//            saveGame(world, seed);
-//        }
-
-        // 返回最终的世界状态
-        return world.getWorld();
-    }
-
-    private static void executeMoveCommands(World world, String moveCommands) {
-        for (char command : moveCommands.toCharArray()) {
-            world.moveAvatar(command);
-        }
+        return session.world().getWorld();
     }
 
     private static void saveGame(World world, long seedValue) {
-        StringBuilder gameState = new StringBuilder();
-
-        // 保存用于初始化随机数生成器的种子
-        gameState.append(seedValue).append("\n");
-
-        // 保存avatar的位置
-        gameState.append(world.getAvatarX()).append(" ").append(world.getAvatarY()).append("\n");
-
-        // 保存世界的TETile二维数组
-        gameState.append(TETile.toString(world.getWorld()));
-
-        // 使用FileUtils写入文件
-        FileUtils.writeFile("savegame.txt", gameState.toString());
-        System.out.println("游戏已保存到 savegame.txt");
+        // 保存种子、avatar的位置和世界网格
+        SaveGame.save(world, seedValue);
+        System.out.println("游戏已保存到 " + SaveGame.FILENAME);
     }
 
-    private static World loadGame() {
-        if (!FileUtils.fileExists("savegame.txt")) {
+    private static SaveGame.Loaded loadGame() {
+        if (!SaveGame.exists()) {
             System.out.println("没有找到保存的游戏文件。");
             System.exit(0);  // 如果没有找到保存文件，退出游戏
         }
 
-        // 读取文件内容
-        String content = FileUtils.readFile("savegame.txt");
-        String[] lines = content.split("\n");
-
-        // 恢复用于初始化随机数生成器的种子
-        long seed = Long.parseLong(lines[0]);
-        Random random = new Random(seed);
-
-        // 获取原先avatar的位置
-        String[] avatarPosition = lines[1].split(" ");
-        int avatarX = Integer.parseInt(avatarPosition[0]);
-        int avatarY = Integer.parseInt(avatarPosition[1]);
-
-        // 恢复世界
-        World world = new World(random);
-        world.setAvatarPosition(avatarX, avatarY);
-
-        return world;
+        // 恢复种子和保存时的世界，不需要重新生成
+        return SaveGame.load();
     }
 
 
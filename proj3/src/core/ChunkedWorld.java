@@ -0,0 +1,345 @@
+package core;
+
+import tileengine.TETile;
+import tileengine.TileSource;
+import tileengine.Tileset;
+import utils.FileUtils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An open-ended world made of CHUNK_SIZE x CHUNK_SIZE chunks that are generated only when
+ * something looks at them. Each chunk is an ordinary generated World whose seed is a hash of
+ * the world seed and the chunk coordinates, so a chunk always comes out the same no matter in
+ * which order chunks are visited. Every chunk has a passage from the middle of each edge to its
+ * nearest room, and neighbouring chunks share those edge midpoints, so the avatar can walk from
+ * chunk to chunk.
+ *
+ * Loaded chunks are kept in an LRU cache limited by a memory budget. Chunks that have not been
+ * modified are simply dropped when evicted, since they can be regenerated; modified chunks are
+ * written to the save directory and read back from there the next time they are needed. Chunk
+ * files record the world seed and chunk configuration they were generated with, and a world
+ * refuses to load chunk files written by a different world.
+ *
+ * Coordinates are world tile coordinates and may be negative. The avatar starts at the spawn
+ * point of chunk (0, 0), as that chunk is loaded: if a saved chunk (0, 0) no longer has floor
+ * there, the avatar starts on its first floor tile instead.
+ */
+public class ChunkedWorld implements TileSource {
+    public static final int CHUNK_SIZE = 64;
+    /** Bytes of memory one loaded chunk takes up, for sizing the memory budget. */
+    public static final int CHUNK_BYTES = CHUNK_SIZE * CHUNK_SIZE;
+    /** The smallest number of chunks the memory budget must fit: the avatar's and its 8 neighbours. */
+    public static final int MIN_LOADED_CHUNKS = 9;
+
+    private static final WorldConfig CHUNK_CONFIG = WorldConfig.DEFAULT
+            .withSize(CHUNK_SIZE, CHUNK_SIZE).withGeneratorVersion(GeneratorVersion.V2);
+    private static final byte FLOOR = (byte) Tileset.FLOOR.id();
+    private static final int MAGIC = 0x42594F43;  // "BYOC"
+    // 区块文件的头部：magic、世界种子、区块的宽高、MST模式、生成器版本和区块坐标，之后是tile id网格
+    private static final int HEADER_BYTES = 4 + 8 + 4 + 4 + 1 + 1 + 4 + 4;
+
+    private final long seed;
+    private final String saveDirectory;
+    private final int maxLoadedChunks;
+    private final LinkedHashMap<Long, Chunk> chunks;
+    private long lastKey;  // 最近一次访问的区块，连续访问同一区块时不必查哈希表
+    private Chunk lastChunk;
+    private int generatedChunks;
+    private int avatarX;
+    private int avatarY;
+
+    // 一个区块：按列存储的tile id网格，以及生成之后是否被修改过
+    private static final class Chunk {
+        final byte[] tiles;
+        boolean dirty;
+
+        Chunk(byte[] tiles) {
+            this.tiles = tiles;
+        }
+    }
+
+    /**
+     * Creates a world that keeps modified chunks in memory only; they are lost when evicted.
+     * @param seed the world seed
+     * @param memoryBudgetBytes how much memory loaded chunks may use
+     */
+    public ChunkedWorld(long seed, long memoryBudgetBytes) {
+        this(seed, memoryBudgetBytes, null);
+    }
+
+    /**
+     * @param seed the world seed
+     * @param memoryBudgetBytes how much memory loaded chunks may use; at least
+     *                          MIN_LOADED_CHUNKS * CHUNK_BYTES
+     * @param saveDirectory where modified chunks are written when evicted, or null to not
+     *                      persist them
+     * @throws IllegalArgumentException if the budget does not fit MIN_LOADED_CHUNKS chunks, or
+     *                                  if the save directory holds chunks of a different world
+     */
+    public ChunkedWorld(long seed, long memoryBudgetBytes, String saveDirectory) {
+        // 移动avatar时会加载它周围的9个区块，预算放不下它们时区块会被反复淘汰和重新生成
+        if (memoryBudgetBytes < (long) MIN_LOADED_CHUNKS * CHUNK_BYTES) {
+            throw new IllegalArgumentException("Memory budget must fit at least "
+                    + MIN_LOADED_CHUNKS + " chunks (" + MIN_LOADED_CHUNKS * CHUNK_BYTES
+                    + " bytes), got " + memoryBudgetBytes);
+        }
+        this.seed = seed;
+        this.saveDirectory = saveDirectory;
+        this.maxLoadedChunks = (int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / CHUNK_BYTES);
+        // accessOrder为true时按访问顺序排列，最久未访问的区块在最前面
+        this.chunks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= maxLoadedChunks) {
+                    return false;
+                }
+                if (eldest.getKey() == lastKey) {
+                    lastChunk = null;
+                }
+                persist(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        if (saveDirectory != null) {
+            new File(saveDirectory).mkdirs();
+        }
+
+        spawn();
+        loadAround(avatarX, avatarY);
+    }
+
+    /**
+     * Returns the tile at the given world coordinates, generating its chunk if needed.
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @return the tile at (x, y), or the avatar if it stands there
+     */
+    @Override
+    public TETile getTile(int x, int y) {
+        if (x == avatarX && y == avatarY) {
+            return Tileset.AVATAR;
+        }
+        return Tileset.fromId(chunkAt(x, y).tiles[localIndex(x, y)]);
+    }
+
+    /**
+     * Replaces the tile at the given world coordinates. The chunk is marked as modified, so it
+     * is persisted instead of regenerated once evicted.
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param tile the new tile; must be one of the Tileset tiles
+     */
+    public void setTile(int x, int y, TETile tile) {
+        Chunk chunk = chunkAt(x, y);
+        chunk.tiles[localIndex(x, y)] = (byte) tile.id();
+        chunk.dirty = true;
+    }
+
+    // 根据键盘输入移动avatar，返回avatar是否真的移动了；进入新的区块时预先加载周围的区块
+    public boolean moveAvatar(char direction) {
+        int newX = avatarX;
+        int newY = avatarY;
+        switch (Character.toLowerCase(direction)) {
+            case 'w': newY += 1; break;
+            case 'a': newX -= 1; break;
+            case 's': newY -= 1; break;
+            case 'd': newX += 1; break;
+            default: return false;
+        }
+        if (chunkAt(newX, newY).tiles[localIndex(newX, newY)] != FLOOR) {
+            return false;
+        }
+        boolean newChunk = chunkCoordinate(newX) != chunkCoordinate(avatarX)
+                || chunkCoordinate(newY) != chunkCoordinate(avatarY);
+        avatarX = newX;
+        avatarY = newY;
+        if (newChunk) {
+            loadAround(avatarX, avatarY);
+        }
+        return true;
+    }
+
+    /**
+     * Writes every modified chunk that is still loaded to the save directory, e.g. before the
+     * game quits. Does nothing if there is no save directory.
+     */
+    public void flush() {
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            persist(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getAvatarX() {
+        return avatarX;
+    }
+
+    public int getAvatarY() {
+        return avatarY;
+    }
+
+    // 当前在内存中的区块数
+    public int getLoadedChunkCount() {
+        return chunks.size();
+    }
+
+    // 到目前为止从种子生成的区块数，被淘汰后重新生成的区块也会计入
+    public int getGeneratedChunkCount() {
+        return generatedChunks;
+    }
+
+    // avatar从区块(0, 0)生成时的出生点出发。区块(0, 0)从存档读取时，出生点可能已经不是地板了，
+    // 这时改用区块中按列扫描遇到的第一个地板格子
+    private void spawn() {
+        World generated = generateChunk(0, 0);
+        String spawnFile = chunkFile(0, 0);
+        if (spawnFile == null || !FileUtils.fileExists(spawnFile)) {
+            chunks.put(key(0, 0), new Chunk(generated.tileIds()));
+        }
+        byte[] tiles = chunkAt(0, 0).tiles;
+        if (tiles[localIndex(generated.getAvatarX(), generated.getAvatarY())] == FLOOR) {
+            avatarX = generated.getAvatarX();
+            avatarY = generated.getAvatarY();
+            return;
+        }
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == FLOOR) {
+                avatarX = i / CHUNK_SIZE;
+                avatarY = i % CHUNK_SIZE;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Chunk file " + spawnFile + " has no floor to spawn on");
+    }
+
+    // 加载(x, y)所在区块及其周围的8个区块，avatar走到区块边界之前它们就已经准备好了
+    private void loadAround(int x, int y) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                chunkAt(x + dx * CHUNK_SIZE, y + dy * CHUNK_SIZE);
+            }
+        }
+    }
+
+    // 返回(x, y)所在的区块，不在内存中时从存档读取或重新生成
+    private Chunk chunkAt(int x, int y) {
+        int chunkX = chunkCoordinate(x);
+        int chunkY = chunkCoordinate(y);
+        long key = key(chunkX, chunkY);
+        if (lastChunk != null && key == lastKey) {
+            return lastChunk;
+        }
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = load(chunkX, chunkY);
+            chunks.put(key, chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    private Chunk load(int chunkX, int chunkY) {
+        String filename = chunkFile(chunkX, chunkY);
+        if (filename != null && FileUtils.fileExists(filename)) {
+            return new Chunk(read(filename, chunkX, chunkY));
+        }
+        return new Chunk(generateChunk(chunkX, chunkY).tileIds());
+    }
+
+    // 读取区块文件，头部必须与这个世界的种子、区块配置和区块坐标一致，否则抛出IllegalArgumentException，
+    // 不会把另一个世界的区块拼进来
+    private byte[] read(String filename, int chunkX, int chunkY) {
+        ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readFileBytes(filename));
+        if (buffer.remaining() != HEADER_BYTES + CHUNK_BYTES || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Corrupt chunk file: " + filename);
+        }
+        if (buffer.getLong() != seed || buffer.getInt() != CHUNK_SIZE || buffer.getInt() != CHUNK_SIZE
+                || buffer.get() != CHUNK_CONFIG.mstMode().ordinal()
+                || buffer.get() != CHUNK_CONFIG.generatorVersion().ordinal()
+                || buffer.getInt() != chunkX || buffer.getInt() != chunkY) {
+            throw new IllegalArgumentException("Chunk file " + filename
+                    + " was saved by a different world than seed " + seed);
+        }
+        byte[] tiles = new byte[CHUNK_BYTES];
+        buffer.get(tiles);
+        for (byte tile : tiles) {
+            Tileset.fromId(tile);  // 检查tile id是否有效
+        }
+        return tiles;
+    }
+
+    // 用区块自己的种子生成一个普通的世界，再从四条边的中点修通道到最近的房间
+    private World generateChunk(int chunkX, int chunkY) {
+        World world = new World(new Random(chunkSeed(chunkX, chunkY)), CHUNK_CONFIG);
+        int middle = CHUNK_SIZE / 2;
+        world.addPassage(0, middle);
+        world.addPassage(CHUNK_SIZE - 1, middle);
+        world.addPassage(middle, 0);
+        world.addPassage(middle, CHUNK_SIZE - 1);
+        generatedChunks++;
+        return world;
+    }
+
+    // 把修改过的区块写入存档目录；存档目录中的区块以后会代替重新生成的区块被读取
+    private void persist(long key, Chunk chunk) {
+        int chunkX = (int) (key >> 32);
+        int chunkY = (int) key;
+        String filename = chunkFile(chunkX, chunkY);
+        if (chunk.dirty && filename != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + CHUNK_BYTES);
+            buffer.putInt(MAGIC);
+            buffer.putLong(seed);
+            buffer.putInt(CHUNK_SIZE);
+            buffer.putInt(CHUNK_SIZE);
+            buffer.put((byte) CHUNK_CONFIG.mstMode().ordinal());
+            buffer.put((byte) CHUNK_CONFIG.generatorVersion().ordinal());
+            buffer.putInt(chunkX);
+            buffer.putInt(chunkY);
+            buffer.put(chunk.tiles);
+            buffer.flip();
+            FileUtils.writeFileAtomically(filename, channel -> {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            });
+            chunk.dirty = false;
+        }
+    }
+
+    private String chunkFile(int chunkX, int chunkY) {
+        if (saveDirectory == null) {
+            return null;
+        }
+        return new File(saveDirectory, "chunk_" + chunkX + "_" + chunkY + ".bin").getPath();
+    }
+
+    // SplitMix64的混合函数，把世界种子和区块坐标散列成区块的种子
+    private long chunkSeed(int chunkX, int chunkY) {
+        long z = seed + 0x9E3779B97F4A7C15L * (key(chunkX, chunkY) + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int chunkCoordinate(int coordinate) {
+        return Math.floorDiv(coordinate, CHUNK_SIZE);
+    }
+
+    // 区块内按列存储的下标
+    private static int localIndex(int x, int y) {
+        return Math.floorMod(x, CHUNK_SIZE) * CHUNK_SIZE + Math.floorMod(y, CHUNK_SIZE);
+    }
+
+    private static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,185 @@
+package core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parses game commands one character at a time, so input can be fed to it as it is typed or
+ * streamed from a script of any length without building strings. Commands have the form
+ * <pre>
+ *   N &lt;digits&gt; S &lt;moves&gt; [:Q]     start a new game with the given seed
+ *   L &lt;moves&gt; [:Q]                  load the saved game
+ * </pre>
+ * where letters are case-insensitive. Every character after the game has started other than
+ * ":Q" is handed to the handler as a move; after ":Q" the rest of the input is ignored unless
+ * {@link #restart()} is called.
+ *
+ * Parsing keeps only a few fields of state and never allocates, so it takes O(n) time and
+ * constant memory for n characters.
+ */
+public class CommandParser {
+    /** Receives the commands parsed from the input. */
+    public interface Handler {
+        /**
+         * Called when "N &lt;digits&gt; S" has been read.
+         * @param seed the seed
+         */
+        void newGame(long seed);
+
+        /** Called when "L" has been read. */
+        void loadGame();
+
+        /**
+         * Called for every character typed during the game.
+         * @param key the character, e.g. one of WASD
+         */
+        void move(char key);
+
+        /** Called when ":Q" has been read. */
+        void quit();
+    }
+
+    private enum State { START, SEED, GAME, COLON, QUIT }
+
+    private final Handler handler;
+    private State state;
+    private long seed;
+    private int seedDigits;
+    private boolean started;  // 是否已经开始过一局游戏
+
+    /**
+     * Creates a parser that expects the input to start with N or L.
+     * @param handler receives the parsed commands
+     */
+    public CommandParser(Handler handler) {
+        this(handler, State.START);
+    }
+
+    private CommandParser(Handler handler, State state) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null.");
+        }
+        this.handler = handler;
+        this.state = state;
+    }
+
+    /**
+     * Creates a parser for a game that is already running, which only expects moves and ":Q".
+     * @param handler receives the parsed commands; newGame and loadGame are never called
+     * @return the parser
+     */
+    public static CommandParser inGame(Handler handler) {
+        return new CommandParser(handler, State.GAME);
+    }
+
+    /**
+     * Feeds one character to the parser.
+     * @param c the next character of the input
+     * @throws IllegalArgumentException if the input does not start with N or L, or the seed
+     *                                  is not a number that fits in a long
+     */
+    public void accept(char c) {
+        switch (state) {
+            case START:
+                if (c == 'N' || c == 'n') {
+                    state = State.SEED;
+                } else if (c == 'L' || c == 'l') {
+                    state = State.GAME;
+                    started = true;
+                    handler.loadGame();
+                } else {
+                    throw new IllegalArgumentException("Invalid input format. Must start with 'N,n' or 'L, l'.");
+                }
+                break;
+            case SEED:
+                if (c == 'S' || c == 's') {
+                    if (seedDigits == 0) {
+                        throw new IllegalArgumentException("Seed cannot be empty.");
+                    }
+                    state = State.GAME;
+                    started = true;
+                    handler.newGame(seed);
+                } else if (c >= '0' && c <= '9') {
+                    if (seed > (Long.MAX_VALUE - (c - '0')) / 10) {
+                        throw new IllegalArgumentException("Seed is too large.");
+                    }
+                    seed = seed * 10 + (c - '0');
+                    seedDigits++;
+                } else {
+                    throw new IllegalArgumentException("Seed must be a number, got '" + c + "'.");
+                }
+                break;
+            case GAME:
+                if (c == ':') {
+                    state = State.COLON;
+                } else {
+                    handler.move(c);
+                }
+                break;
+            case COLON:
+                if (c == 'Q' || c == 'q') {
+                    state = State.QUIT;
+                    handler.quit();
+                } else if (c != ':') {
+                    // 冒号后面不是Q，冒号本身不算命令，这个字符仍然是移动
+                    state = State.GAME;
+                    handler.move(c);
+                }
+                break;
+            default:
+                break;  // 已经退出，忽略剩下的输入
+        }
+    }
+
+    /**
+     * Feeds every character of the sequence to the parser.
+     * @param input the input
+     */
+    public void accept(CharSequence input) {
+        for (int i = 0; i < input.length(); i++) {
+            accept(input.charAt(i));
+        }
+    }
+
+    /**
+     * Feeds everything the reader returns to the parser, reading it in fixed-size blocks.
+     * @param input the input
+     * @throws IOException if reading fails
+     */
+    public void accept(Reader input) throws IOException {
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                accept(buffer[i]);
+            }
+        }
+    }
+
+    /**
+     * Starts over after ":Q", expecting a new N or L command, so one input can hold several
+     * sessions one after the other (e.g. "N123SWW:QLDD:Q").
+     */
+    public void restart() {
+        state = State.START;
+        seed = 0;
+        seedDigits = 0;
+    }
+
+    /**
+     * Checks that the input did not end in the middle of a command. Call this after the last
+     * character.
+     * @throws IllegalArgumentException if the input ended before any game started, or in the
+     *                                  middle of a seed
+     */
+    public void finish() {
+        if (!started || state == State.SEED) {
+            throw new IllegalArgumentException("Input ended before the game started.");
+        }
+    }
+
+    /** @return true once ":Q" has been read */
+    public boolean hasQuit() {
+        return state == State.QUIT;
+    }
+}
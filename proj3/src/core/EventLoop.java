@@ -0,0 +1,96 @@
+package core;
+
+import edu.princeton.cs.algs4.StdDraw;
+
+/**
+ * Turns StdDraw's keyboard and mouse state into events and decides when to redraw, so that the
+ * game only does work when something happens.
+ *
+ * StdDraw offers no way to wait for input, only to check for it, so the loop checks with a
+ * growing pause while nothing happens: right after an event it checks every millisecond, and
+ * after a while of idling only every MAX_IDLE_WAIT_MS milliseconds. An idle game therefore
+ * uses next to no CPU while still picking up a key press within a frame or two. Redraws only
+ * happen after an event that changed something, at most FRAMES_PER_SECOND times a second; any
+ * number of events in between are drawn together.
+ */
+public class EventLoop {
+    public static final int FRAMES_PER_SECOND = 60;
+    // 空闲时两次检查输入之间最长的等待时间
+    private static final int MAX_IDLE_WAIT_MS = 32;
+    private static final long FRAME_NANOS = 1_000_000_000L / FRAMES_PER_SECOND;
+
+    /** Receives the events of {@link #run(Listener)}. */
+    public interface Listener {
+        /**
+         * Called for every typed key, in the order they were typed.
+         * @param key the typed key
+         * @return true if the screen needs to be redrawn
+         */
+        boolean keyTyped(char key);
+
+        /**
+         * Called when the mouse has moved since the last check.
+         * @param x the new x position, in StdDraw's scale
+         * @param y the new y position, in StdDraw's scale
+         * @return true if the screen needs to be redrawn
+         */
+        boolean mouseMoved(double x, double y);
+
+        /** Redraws the screen; called after events asked for it, at a capped rate. */
+        void render();
+    }
+
+    private int idleWaitMs = 1;
+
+    /**
+     * Dispatches events to the listener until the program exits. The first frame is rendered
+     * right away.
+     * @param listener receives the events
+     */
+    public void run(Listener listener) {
+        double mouseX = Double.NaN;
+        double mouseY = Double.NaN;
+        boolean needsRender = true;
+        long lastRender = System.nanoTime() - FRAME_NANOS;
+        while (true) {
+            boolean active = false;
+            while (StdDraw.hasNextKeyTyped()) {
+                needsRender |= listener.keyTyped(StdDraw.nextKeyTyped());
+                active = true;
+            }
+            double x = StdDraw.mouseX();
+            double y = StdDraw.mouseY();
+            if (x != mouseX || y != mouseY) {
+                mouseX = x;
+                mouseY = y;
+                needsRender |= listener.mouseMoved(x, y);
+                active = true;
+            }
+
+            if (needsRender && System.nanoTime() - lastRender >= FRAME_NANOS) {
+                listener.render();
+                lastRender = System.nanoTime();
+                needsRender = false;
+            }
+            waitForInput(active);
+        }
+    }
+
+    /**
+     * Waits until a key is typed and returns it.
+     * @return the typed key
+     */
+    public char awaitKey() {
+        idleWaitMs = 1;
+        while (!StdDraw.hasNextKeyTyped()) {
+            waitForInput(false);
+        }
+        return StdDraw.nextKeyTyped();
+    }
+
+    // 有输入时马上恢复到最短的等待时间，没有输入时等待时间逐渐翻倍，直到MAX_IDLE_WAIT_MS
+    private void waitForInput(boolean active) {
+        idleWaitMs = active ? 1 : Math.min(idleWaitMs * 2, MAX_IDLE_WAIT_MS);
+        StdDraw.pause(idleWaitMs);
+    }
+}
@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * Versions of the world generator. A seed always generates the same World under the same
+ * version; newer versions change how some steps consume the random numbers, so they generate
+ * different worlds from the same seed and have to be chosen explicitly.
+ */
+public enum GeneratorVersion {
+    /**
+     * The original generator. The avatar spawns by drawing random cells until one is floor,
+     * which takes an unbounded number of draws on sparse maps.
+     */
+    V1,
+    /**
+     * Spawns the avatar with a single draw among the floor cells, counted while the world is
+     * generated.
+     */
+    V2
+}
@@ -1,11 +1,6 @@
 package core;
 import edu.princeton.cs.algs4.StdDraw;
-import org.apache.bcel.generic.FieldOrMethod;
-import org.apache.bcel.generic.IF_ACMPEQ;
-import org.apache.bcel.generic.NEW;
 import tileengine.TERenderer;
-import tileengine.TETile;
-import utils.FileUtils;
 
 import javax.management.relation.RelationNotification;
 import java.awt.*;
@@ -13,6 +8,13 @@ import java.util.Arrays;
 import java.util.Random;
 
 public class Main {
+    // 窗口最多显示这么多格，更大的世界通过跟随avatar的镜头显示
+    private static final int MAX_WINDOW_WIDTH = World.DEFAULT_WIDTH;
+    private static final int MAX_WINDOW_HEIGHT = World.DEFAULT_HEIGHT;
+
+    // 等待输入时不占用CPU
+    private final EventLoop events = new EventLoop();
+
     public static void main(String[] args) {
         Main game = new Main();
         game.showMainMenu();
@@ -27,15 +29,13 @@ public class Main {
         drawMainMenu();
 
         while (true) {
-            if (StdDraw.hasNextKeyTyped()) {
-                char key = StdDraw.nextKeyTyped();
-                if (key == 'N' || key == 'n') {
-                    enterSeed();  // 开始新游戏
-                } else if (key == 'L' || key == 'l') {
-                    loadGame();  // 加载游戏
-                } else if (key == 'Q' || key == 'q') {
-                    System.exit(0);  // 退出游戏
-                }
+            char key = events.awaitKey();
+            if (key == 'N' || key == 'n') {
+                enterSeed();  // 开始新游戏
+            } else if (key == 'L' || key == 'l') {
+                loadGame();  // 加载游戏
+            } else if (key == 'Q' || key == 'q') {
+                System.exit(0);  // 退出游戏
             }
         }
     }
@@ -56,52 +56,24 @@ public class Main {
     }
 
     private void saveGame(World world, long seedValue) {
-        StringBuilder gameState = new StringBuilder();
-
-        // 保存用于初始化随机数生成器的种子
-        gameState.append(seedValue).append("\n");
-
-        // 保存avatar的位置
-        gameState.append(world.getAvatarX()).append(" ").append(world.getAvatarY()).append("\n");
-
-        // 保存世界的TETile二维数组
-        gameState.append(TETile.toString(world.getWorld()));
-
-        // 使用FileUtils写入文件
-        FileUtils.writeFile("savegame.txt", gameState.toString());
-        System.out.println("游戏已保存到 savegame.txt");
+        // 保存种子、avatar的位置和世界网格
+        SaveGame.save(world, seedValue);
+        System.out.println("游戏已保存到 " + SaveGame.FILENAME);
     }
 
     private void loadGame() {
-        if (!FileUtils.fileExists("savegame.txt")) {
+        if (!SaveGame.exists()) {
             System.out.println("没有找到保存的游戏文件。");
             System.exit(0);  // 如果没有找到保存文件，退出游戏
         }
 
-        // 读取文件内容
-        String content = FileUtils.readFile("savegame.txt");
-        String[] lines = content.split("\n");
-
-        // 恢复用于初始化随机数生成器的种子
-        long seed = Long.parseLong(lines[0]);
-        Random random = new Random(seed);
-
-        // 获取原先avatar的位置
-        String[] avatarPosition = lines[1].split(" ");
-        int avatarX = Integer.parseInt(avatarPosition[0]);
-        int avatarY = Integer.parseInt(avatarPosition[1]);
-
-        // 恢复世界
-        World world = new World(random);
-        world.setAvatarPosition(avatarX, avatarY);
-
-        // 渲染加载的世界
-        TERenderer ter = new TERenderer();
-        ter.initialize(80, 30);
-        ter.renderFrame(world.getWorld());
+        // 恢复种子和保存时的世界，不需要重新生成
+        SaveGame.Loaded loaded = SaveGame.load();
+        World world = loaded.world();
 
-        // 继续处理输入
-        processInput(world, ter, seed);
+        // 继续处理输入，第一帧在processInput中绘制
+        TERenderer ter = createRenderer(world);
+        processInput(world, ter, loaded.seed());
     }
 
     // 处理种子输入并在菜单上动态显示
@@ -120,28 +92,26 @@ public class Main {
 
         while (!seedEntered) {
             // 等待用户输入数字或按下S键
-            if (StdDraw.hasNextKeyTyped()) {
-                char key = StdDraw.nextKeyTyped();
-
-                if (Character.isDigit(key)) {
-                    // 如果输入是数字，则将数字加入种子
-                    seed.append(key);
-
-                    // 清除旧的种子和提示信息
-                    StdDraw.setPenColor(StdDraw.BLACK);
-                    StdDraw.filledRectangle(40, 20, 30, 2);  // 覆盖掉之前的显示区域
-
-                    // 动态显示 "Enter Seed" 和当前输入的种子
-                    StdDraw.setPenColor(StdDraw.WHITE);
-                    StdDraw.text(40, 20, "Enter Seed: " + seed.toString());  // 显示新的种子值
-                    StdDraw.show();
-                } else if (key == 'S' || key == 's') {
-                    // 按下S开始游戏
-                    if (!seed.isEmpty()) {  // 确保种子不为空
-                        seedEntered = true;
-                        long seedValue = Long.parseLong(seed.toString());
-                        startNewGame(seedValue);  // 使用输入的种子启动游戏
-                    }
+            char key = events.awaitKey();
+
+            if (Character.isDigit(key)) {
+                // 如果输入是数字，则将数字加入种子
+                seed.append(key);
+
+                // 清除旧的种子和提示信息
+                StdDraw.setPenColor(StdDraw.BLACK);
+                StdDraw.filledRectangle(40, 20, 30, 2);  // 覆盖掉之前的显示区域
+
+                // 动态显示 "Enter Seed" 和当前输入的种子
+                StdDraw.setPenColor(StdDraw.WHITE);
+                StdDraw.text(40, 20, "Enter Seed: " + seed.toString());  // 显示新的种子值
+                StdDraw.show();
+            } else if (key == 'S' || key == 's') {
+                // 按下S开始游戏
+                if (!seed.isEmpty()) {  // 确保种子不为空
+                    seedEntered = true;
+                    long seedValue = Long.parseLong(seed.toString());
+                    startNewGame(seedValue);  // 使用输入的种子启动游戏
                 }
             }
         }
@@ -149,62 +119,126 @@ public class Main {
 
     // 随机开始一个新的游戏
     private void startNewGame(long seedValue) {
-        // 初始化渲染器，设置世界大小
-        TERenderer ter = new TERenderer();
-        ter.initialize(80, 30);
-
         // 创建一个新的世界
         Random random = new Random(seedValue);
         World world = new World(random);
 
-        // 渲染世界
-        TETile[][] worldTiles = world.getWorld();
-        ter.renderFrame(worldTiles);
+        // 初始化渲染器，第一帧在processInput中绘制
+        TERenderer ter = createRenderer(world);
 
         // 操作avatar
         processInput(world, ter, seedValue);
     }
 
-    // 处理输入，显示tile类型
+    // 窗口与世界一样大，但不超过MAX_WINDOW_WIDTH x MAX_WINDOW_HEIGHT
+    private TERenderer createRenderer(World world) {
+        TERenderer ter = new TERenderer();
+        ter.initialize(Math.min(world.getWidth(), MAX_WINDOW_WIDTH),
+                Math.min(world.getHeight(), MAX_WINDOW_HEIGHT));
+        return ter;
+    }
+
+    // 处理输入，显示tile类型；只有输入改变了世界或HUD时才重画
     public void processInput(World world, TERenderer ter, long seedValue) {
-        StringBuilder command = new StringBuilder();  // 用于存储所有用户的输入
+        events.run(new GameSession(world, ter, seedValue));
+    }
 
-        while (true) {
-            if (StdDraw.hasNextKeyTyped()) {
-                char key = StdDraw.nextKeyTyped();
-                command.append(key); // 将每个输入的字符追加到命令字符串中
-//                System.out.println(command.toString());
-
-                // 处理命令输入
-                // 检查输入的最后两个字符是否是 ":Q" 或 ":q"
-                if (command.length() >= 2 && (command.substring(command.length() - 2).equals(":q") || command.substring(command.length() - 2).equals(":Q"))) {
-                    saveGame(world, seedValue);
-                    System.exit(0);
-                } else {
-                    world.moveAvatar(key);
-                }
+    // 一局游戏：按键交给命令解析器，移动avatar并记录到journal，鼠标移动时更新HUD
+    private class GameSession implements EventLoop.Listener, CommandParser.Handler {
+        private final World world;
+        private final TERenderer ter;
+        private final long seedValue;
+        private final MoveJournal journal;
+        private final CommandParser parser = CommandParser.inGame(this);  // 识别移动和":Q"，不保存输入历史
+        private final int windowWidth;
+        private final int windowHeight;
+        private String hud = "";  // 左上角显示的鼠标所在的Tile类型
+        private int mouseX = -1;  // 鼠标在窗口中的位置
+        private int mouseY = -1;
+        private boolean moved;  // 当前按键是否移动了avatar
+
+        GameSession(World world, TERenderer ter, long seedValue) {
+            this.world = world;
+            this.ter = ter;
+            this.seedValue = seedValue;
+            // 先完整保存一次，之后每次移动只向journal追加一个字节，游戏崩溃也不会丢失进度
+            this.journal = MoveJournal.begin(world, seedValue);
+            this.windowWidth = Math.min(world.getWidth(), MAX_WINDOW_WIDTH);
+            this.windowHeight = Math.min(world.getHeight(), MAX_WINDOW_HEIGHT);
+            ter.setCamera(world.getAvatarX(), world.getAvatarY(), world.getWidth(), world.getHeight());
+        }
+
+        @Override
+        public boolean keyTyped(char key) {
+            moved = false;
+            parser.accept(key);
+            return moved;
+        }
+
+        @Override
+        public void move(char key) {
+            int oldX = world.getAvatarX();
+            int oldY = world.getAvatarY();
+            if (world.moveAvatar(key)) {
+                journal.append(key);
+                // 只有avatar离开和进入的两个格子变了，镜头不动时下一帧只重画这两个格子
+                ter.markChanged(oldX, oldY);
+                ter.markChanged(world.getAvatarX(), world.getAvatarY());
+                // 镜头跟随avatar，镜头移动时重画整个窗口
+                ter.setCamera(world.getAvatarX(), world.getAvatarY(), world.getWidth(), world.getHeight());
+                hud = hudText();  // 鼠标下的格子可能变了
+                moved = true;
             }
+        }
 
-            ter.renderFrame(world.getWorld());
+        @Override
+        public void quit() {
+            journal.close();
+            saveGame(world, seedValue);
+            System.exit(0);
+        }
+
+        @Override
+        public void newGame(long seed) {
+            // 游戏中的解析器不会解析N命令
+        }
+
+        @Override
+        public void loadGame() {
+            // 游戏中的解析器不会解析L命令
+        }
 
-            // 获取鼠标所在位置
-            int mouseX = (int) StdDraw.mouseX();
-            int mouseY = (int) StdDraw.mouseY();
+        @Override
+        public boolean mouseMoved(double x, double y) {
+            mouseX = (int) x;
+            mouseY = (int) y;
+            String newHud = hudText();
+            boolean changed = !newHud.equals(hud);
+            hud = newHud;
+            return changed;
+        }
 
-            if (mouseX >= 0 && mouseX < world.getWidth() && mouseY >=0 && mouseY < world.getHeight()) {
-                // 获取鼠标所在tile的类型
-                String tileType = world.getWorld()[mouseX][mouseY].description();
+        // 鼠标坐标是窗口中的位置，加上镜头位置得到世界坐标
+        private String hudText() {
+            if (mouseX >= 0 && mouseX < windowWidth && mouseY >= 0 && mouseY < windowHeight) {
+                return "Tile: " + world.getTile(ter.getCameraX() + mouseX, ter.getCameraY() + mouseY).description();
+            }
+            return "";
+        }
 
-                // 在左上角显示鼠标所在的Tile类型
+        @Override
+        public void render() {
+            // HUD文字画在最上面两行的tile上，重画这两行把旧文字盖掉
+            ter.invalidate(0, windowHeight - 2, windowWidth, 2);
+            ter.drawChangedTiles(world);  // 只重画发生变化的格子
+
+            if (!hud.isEmpty()) {
                 StdDraw.setPenColor(StdDraw.WHITE);
-                StdDraw.textLeft(0, world.getHeight() - 1, "Tile: " + tileType);
+                StdDraw.textLeft(0, windowHeight - 1, hud);
             }
 
             // 显示更新
             StdDraw.show();
-
-            // 控制帧率
-            StdDraw.pause(1000 / 60); // 每秒60帧
         }
     }
 }
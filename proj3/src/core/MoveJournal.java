@@ -0,0 +1,209 @@
+package core;
+
+import utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only journal of the moves made since the last full save, so the game can be
+ * autosaved on every move by appending a single byte instead of rewriting the whole grid.
+ *
+ * The journal file starts with a header that ties it to one particular save file:
+ * <pre>
+ *   int   magic "BYOJ"
+ *   int   CRC32 of the save file the moves apply to (the last four bytes of that file)
+ * </pre>
+ * followed by one byte per move, the key that moved the avatar. A journal whose header does
+ * not match the current save file is left over from an older save and is ignored on load, so
+ * a crash between writing a save and starting its journal can never replay moves against the
+ * wrong world.
+ *
+ * Every {@link #DEFAULT_SNAPSHOT_INTERVAL} moves (or the interval given to
+ * {@link #begin(String, String, World, long, int)}) the journal takes a fresh snapshot of the
+ * world and starts over, so loading never replays more than one interval's worth of moves no
+ * matter how long the session has been running.
+ */
+public class MoveJournal implements AutoCloseable {
+    public static final String FILENAME = "savegame.journal";
+
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 256;
+
+    private static final int MAGIC = 0x42594F4A;  // "BYOJ"
+    private static final int HEADER_BYTES = 8;
+
+    private final String saveFile;
+    private final String journalFile;
+    private final World world;
+    private final long seed;
+    private final int snapshotInterval;
+    private final ByteBuffer move = ByteBuffer.allocate(1);
+    private FileChannel channel;
+    private int movesSinceSnapshot;
+
+    private MoveJournal(String saveFile, String journalFile, World world, long seed,
+                        int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive.");
+        }
+        this.saveFile = saveFile;
+        this.journalFile = journalFile;
+        this.world = world;
+        this.seed = seed;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Saves a snapshot of the game to the default save file and starts an empty journal for
+     * the moves made after it.
+     * @param world the world to save
+     * @param seed the seed the world was generated from
+     * @return the journal to append moves to
+     */
+    public static MoveJournal begin(World world, long seed) {
+        return begin(SaveGame.FILENAME, FILENAME, world, seed);
+    }
+
+    /**
+     * Saves a snapshot of the game to the given save file and starts an empty journal for the
+     * moves made after it, taking a new snapshot every {@link #DEFAULT_SNAPSHOT_INTERVAL} moves.
+     * @param saveFile the file to save the snapshot to
+     * @param journalFile the file to journal moves to
+     * @param world the world to save
+     * @param seed the seed the world was generated from
+     * @return the journal to append moves to
+     */
+    public static MoveJournal begin(String saveFile, String journalFile, World world, long seed) {
+        return begin(saveFile, journalFile, world, seed, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Saves a snapshot of the game to the given save file and starts an empty journal for the
+     * moves made after it. Both files are replaced atomically.
+     * @param saveFile the file to save the snapshot to
+     * @param journalFile the file to journal moves to
+     * @param world the world to save; the journal snapshots it as moves are appended
+     * @param seed the seed the world was generated from
+     * @param snapshotInterval how many moves to journal before taking a new snapshot
+     * @return the journal to append moves to
+     * @throws IllegalArgumentException if the snapshot interval is not positive
+     * @throws RuntimeException if an IOException occurs during the write operation.
+     */
+    public static MoveJournal begin(String saveFile, String journalFile, World world, long seed,
+                                    int snapshotInterval) {
+        MoveJournal journal = new MoveJournal(saveFile, journalFile, world, seed, snapshotInterval);
+        journal.snapshot();
+        return journal;
+    }
+
+    /**
+     * Saves the world as it is now and empties the journal. Called automatically every
+     * snapshot interval.
+     * @throws RuntimeException if an IOException occurs during the write operation.
+     */
+    public void snapshot() {
+        close();
+        // 先替换存档，再替换journal；两步之间崩溃时旧journal的CRC对不上新存档，不会被回放
+        int checksum = SaveGame.saveWithChecksum(saveFile, world, seed);
+        FileUtils.writeFileAtomically(journalFile, channel -> {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(checksum);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        });
+        try {
+            channel = FileChannel.open(new File(journalFile).toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        movesSinceSnapshot = 0;
+    }
+
+    /**
+     * Returns how many moves have been journaled since the last snapshot, which is how many
+     * moves loading the save would replay.
+     * @return the number of journaled moves
+     */
+    public int movesSinceSnapshot() {
+        return movesSinceSnapshot;
+    }
+
+    /**
+     * Appends a move to the journal. The byte goes straight to the operating system, so it
+     * survives the game crashing; unlike full saves it is not forced to disk. Once the
+     * snapshot interval is reached, a new snapshot is taken instead.
+     * @param key the key that moved the avatar; the move must already be applied to the world
+     * @throws RuntimeException if an IOException occurs during the write operation.
+     */
+    public void append(char key) {
+        move.clear();
+        move.put((byte) key).flip();
+        try {
+            while (move.hasRemaining()) {
+                channel.write(move);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        movesSinceSnapshot++;
+        if (movesSinceSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            channel = null;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Replays the moves journaled after the given save file was written onto a world loaded
+     * from it. Does nothing if there is no journal or it belongs to a different save.
+     * @param journalFile the journal to replay
+     * @param saveFile the save file the world was loaded from
+     * @param world the loaded world
+     * @return the number of moves replayed
+     * @throws RuntimeException if an IOException occurs during the read operation.
+     */
+    public static int replay(String journalFile, String saveFile, World world) {
+        if (!FileUtils.fileExists(journalFile)) {
+            return 0;
+        }
+        // 用流读取，文件在返回前关闭，之后的快照可以直接替换它
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(new File(journalFile).toPath())))) {
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != SaveGame.checksum(saveFile)) {
+                    return 0;
+                }
+            } catch (EOFException ex) {
+                return 0;  // 头部不完整
+            }
+            int moves = 0;
+            for (int key = in.read(); key != -1; key = in.read()) {
+                world.moveAvatar((char) key);
+                moves++;
+            }
+            return moves;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
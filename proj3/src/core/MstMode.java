@@ -0,0 +1,15 @@
+package core;
+
+/**
+ * Selects which room pairs are offered to the Kruskal minimum spanning tree that connects the
+ * rooms of a World with corridors.
+ */
+public enum MstMode {
+    /** Every pair of rooms is a candidate edge. O(n^2) edges; the original generator. */
+    EXHAUSTIVE,
+    /**
+     * Only each room's nearest neighbours (by Manhattan distance between centers) are candidate
+     * edges. O(n) edges, for worlds with thousands of rooms.
+     */
+    NEAREST_NEIGHBORS
+}
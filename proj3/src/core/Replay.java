@@ -0,0 +1,94 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Replays recorded sessions, the same keystrokes AutograderBuddy.getWorldFromInput takes, from
+ * a stream instead of a String. The input is read in fixed-size blocks and every keystroke is
+ * applied to the world as soon as it is read, so a script of millions of keystrokes needs no
+ * more memory than a short one. Scripts are ASCII; each byte is one keystroke.
+ *
+ * Like AutograderBuddy, ":Q" saves the game and "L" loads the saved game. Unlike it, a script
+ * may go on after ":Q" with another N or L command, e.g. "N123SWW:QLDD:Q", to replay a quit
+ * and a later load in one go.
+ */
+public class Replay {
+    // 每次从通道读取的字节数
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * The outcome of a replay.
+     * @param seed the seed of the replayed game
+     * @param world the world after the last keystroke
+     * @param keystrokes how many keystrokes were read
+     */
+    public record Result(long seed, World world, long keystrokes) { }
+
+    /** Receives the world at regular points during a replay, e.g. to hash or save it. */
+    @FunctionalInterface
+    public interface CheckpointListener {
+        /**
+         * @param keystrokes how many keystrokes have been replayed so far
+         * @param world the world at this point; it keeps changing after the call returns,
+         *              so copy anything that should be kept
+         */
+        void checkpoint(long keystrokes, World world);
+    }
+
+    private Replay() {
+    }
+
+    /**
+     * Replays a whole script.
+     * @param input the script
+     * @return the final state
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the script is malformed
+     */
+    public static Result replay(InputStream input) throws IOException {
+        return replay(Channels.newChannel(input), SaveStore.files(), 0, null);
+    }
+
+    /**
+     * Replays a whole script, reporting the world to the listener every checkpointInterval
+     * keystrokes once the game has started.
+     * @param input the script
+     * @param store where ":Q" saves the game and "L" loads it from
+     * @param checkpointInterval keystrokes between checkpoints, or 0 for no checkpoints
+     * @param listener receives the checkpoints; may be null if checkpointInterval is 0
+     * @return the final state
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the script is malformed or the interval is negative
+     */
+    public static Result replay(ReadableByteChannel input, SaveStore store, long checkpointInterval,
+                                CheckpointListener listener) throws IOException {
+        if (checkpointInterval < 0 || (checkpointInterval > 0 && listener == null)) {
+            throw new IllegalArgumentException("Checkpoints need a positive interval and a listener.");
+        }
+        ReplaySession session = new ReplaySession(store);
+        CommandParser parser = new CommandParser(session);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        long keystrokes = 0;
+        while (input.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                parser.accept((char) (buffer.get() & 0xFF));
+                if (parser.hasQuit()) {
+                    parser.restart();  // 之后可以继续新的N或L命令
+                }
+                keystrokes++;
+                if (checkpointInterval > 0 && keystrokes % checkpointInterval == 0
+                        && session.world() != null) {
+                    listener.checkpoint(keystrokes, session.world());
+                }
+            }
+            buffer.clear();
+        }
+        parser.finish();
+        return new Result(session.seed(), session.world(), keystrokes);
+    }
+}
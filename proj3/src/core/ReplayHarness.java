@@ -0,0 +1,117 @@
+package core;
+
+import tileengine.TileGrids;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays many recorded sessions in parallel on a fork-join pool and reduces each final world
+ * to a 64-bit hash with {@link TileGrids}, so the results of two builds can be compared
+ * session by session.
+ *
+ * Every session gets its own in-memory save store, so sessions that quit with ":Q" and load
+ * again with "L" (see {@link Replay}) never see each other's saves, and the save files in the
+ * working directory are left alone. A session's hash depends only on its script.
+ */
+public class ReplayHarness implements AutoCloseable {
+    private final ForkJoinPool pool;
+
+    /** Creates a harness using one worker per available processor. */
+    public ReplayHarness() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of worker threads
+     */
+    public ReplayHarness(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Replays the given scripts, e.g. "n123swasd:q".
+     * @param scripts the scripts to replay
+     * @return the hash of each session's final world, in the order of the scripts
+     * @throws IllegalArgumentException if a script is malformed
+     */
+    public long[] replayScripts(List<String> scripts) {
+        return run(scripts.size(), i -> Channels.newChannel(
+                new ByteArrayInputStream(scripts.get(i).getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    /**
+     * Replays the scripts stored in the given files, streaming each one.
+     * @param files the script files to replay
+     * @return the hash of each session's final world, in the order of the files
+     * @throws IllegalArgumentException if a script is malformed
+     * @throws RuntimeException if an IOException occurs while reading a file
+     */
+    public long[] replayFiles(List<Path> files) {
+        return run(files.size(), i -> FileChannel.open(files.get(i), StandardOpenOption.READ));
+    }
+
+    /** Shuts down the worker threads. */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // 打开第i个会话的脚本
+    @FunctionalInterface
+    private interface ScriptSource {
+        ReadableByteChannel open(int i) throws IOException;
+    }
+
+    private long[] run(int count, ScriptSource scripts) {
+        long[] hashes = new long[count];
+        pool.invoke(new ReplayTask(0, count, scripts, hashes));
+        return hashes;
+    }
+
+    // 把[from, to)区间内的会话不断对半拆分，直到只剩一个会话再回放
+    private static class ReplayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final ScriptSource scripts;
+        private final long[] hashes;
+
+        ReplayTask(int from, int to, ScriptSource scripts, long[] hashes) {
+            this.from = from;
+            this.to = to;
+            this.scripts = scripts;
+            this.hashes = hashes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 1) {
+                return;
+            }
+            if (to - from == 1) {
+                try (ReadableByteChannel script = scripts.open(from)) {
+                    Replay.Result result = Replay.replay(script, SaveStore.inMemory(), 0, null);
+                    // 直接从World的网格读取，不必先复制出TETile[][]
+                    World world = result.world();
+                    hashes[from] = TileGrids.hash(world, 0, 0, world.getWidth(), world.getHeight());
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ReplayTask(from, mid, scripts, hashes), new ReplayTask(mid, to, scripts, hashes));
+        }
+    }
+}
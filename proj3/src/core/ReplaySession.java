@@ -0,0 +1,55 @@
+package core;
+
+import java.util.Random;
+
+// 把解析出的命令应用到世界上：创建或加载世界、移动avatar，遇到:Q时保存游戏
+// AutograderBuddy和Replay共用，存档和读档都通过store进行
+class ReplaySession implements CommandParser.Handler {
+    private final SaveStore store;
+    private final WorldCache worlds;  // null表示每次都重新生成世界
+    private World world;
+    private long seed;
+
+    ReplaySession(SaveStore store) {
+        this(store, null);
+    }
+
+    ReplaySession(SaveStore store, WorldCache worlds) {
+        this.store = store;
+        this.worlds = worlds;
+    }
+
+    @Override
+    public void newGame(long newSeed) {
+        // 用种子创建一个新世界
+        seed = newSeed;
+        world = worlds != null ? worlds.get(newSeed) : new World(new Random(newSeed));
+    }
+
+    @Override
+    public void loadGame() {
+        // 加载游戏
+        SaveGame.Loaded loaded = store.load();
+        seed = loaded.seed();
+        world = loaded.world();
+    }
+
+    @Override
+    public void move(char key) {
+        world.moveAvatar(key);
+    }
+
+    @Override
+    public void quit() {
+        store.save(world, seed);
+    }
+
+    // 游戏开始之前为null
+    World world() {
+        return world;
+    }
+
+    long seed() {
+        return seed;
+    }
+}
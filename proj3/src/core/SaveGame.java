@@ -0,0 +1,405 @@
+package core;
+
+import tileengine.TETile;
+import tileengine.Tileset;
+import utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes saved games, shared by Main and AutograderBuddy.
+ *
+ * Games are saved in a versioned binary format (all numbers big-endian):
+ * <pre>
+ *   int   magic "BYOW"
+ *   byte  format version (1)
+ *   long  seed
+ *   int   width, int height
+ *   byte  MST mode ordinal
+ *   byte  generator version ordinal
+ *   int   avatar x, int avatar y
+ *   ...   tile data: the column-major tile id grid (one byte per tile, as World stores it,
+ *         so the avatar's cell holds floor), DEFLATE-compressed; long runs of empty space
+ *         and walls compress by 10x or more
+ *   int   length of the tile data in bytes
+ *   int   CRC32 of every preceding byte
+ * </pre>
+ * The length comes after the tile data so that saves can be streamed out while compressing.
+ *
+ * Saves replace the file atomically, so a crash while saving leaves the previous save intact.
+ * Moves made after a save can be journaled with {@link MoveJournal}; loading the default save
+ * replays them.
+ *
+ * Loading restores the saved grid directly instead of regenerating the world from the seed.
+ * Text saves written by earlier versions (seed line, avatar line, TETile.toString grid) can
+ * still be loaded.
+ */
+public class SaveGame {
+    public static final String FILENAME = "savegame.bin";
+    /** Where earlier versions saved the game as text. */
+    public static final String LEGACY_FILENAME = "savegame.txt";
+
+    private static final int MAGIC = 0x42594F57;  // "BYOW"
+    private static final byte VERSION = 1;
+    // tile数据之前的头部，以及之后的长度和CRC的字节数
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 4 + 4 + 1 + 1 + 4 + 4;
+    private static final int TRAILER_BYTES = 4 + 4;
+    private static final int CRC_BYTES = 4;
+    // 读写存档时使用的缓冲区大小，按块读写，缓冲区的内存占用与世界大小无关
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final long MAX_INFLATE_RATIO = 1032;
+
+    /**
+     * A loaded game.
+     * @param seed the seed the world was originally generated from
+     * @param world the world as it was saved
+     */
+    public record Loaded(long seed, World world) { }
+
+    /**
+     * Saves the game to the default save file. The move journal of the previous save is no
+     * longer needed afterwards and is deleted.
+     * @param world the world to save
+     * @param seed the seed the world was generated from
+     */
+    public static void save(World world, long seed) {
+        save(FILENAME, world, seed);
+        FileUtils.deleteFile(MoveJournal.FILENAME);
+    }
+
+    /**
+     * Saves the game to the given file in the binary format, atomically replacing its contents.
+     * @param filename the file to write
+     * @param world the world to save
+     * @param seed the seed the world was generated from
+     * @throws RuntimeException if an IOException occurs during the write operation.
+     */
+    public static void save(String filename, World world, long seed) {
+        saveWithChecksum(filename, world, seed);
+    }
+
+    // 保存并返回写出的CRC，MoveJournal用它把journal和存档对应起来，不必再把存档读回来
+    static int saveWithChecksum(String filename, World world, long seed) {
+        int[] checksum = new int[1];
+        FileUtils.writeFileAtomically(filename, channel -> checksum[0] = write(channel, world, seed));
+        return checksum[0];
+    }
+
+    /**
+     * Checks whether there is a saved game to load, in either format.
+     * @return true if the default or the legacy save file exists
+     */
+    public static boolean exists() {
+        return FileUtils.fileExists(FILENAME) || FileUtils.fileExists(LEGACY_FILENAME);
+    }
+
+    /**
+     * Loads the default save file and replays the moves journaled since it was written,
+     * falling back to the legacy text save if there is no binary save.
+     * @return the loaded game
+     */
+    public static Loaded load() {
+        if (!FileUtils.fileExists(FILENAME)) {
+            return load(LEGACY_FILENAME);
+        }
+        Loaded loaded = load(FILENAME);
+        MoveJournal.replay(MoveJournal.FILENAME, FILENAME, loaded.world());
+        return loaded;
+    }
+
+    /**
+     * Loads a saved game from the given file, in either the binary or the legacy text format.
+     * Binary saves are streamed in fixed-size chunks and decompressed straight into the world's
+     * tile grid, so apart from the grid itself loading needs the same memory for any world size.
+     * The file is closed before this returns.
+     * @param filename the file to read
+     * @return the loaded game
+     * @throws IllegalArgumentException if the file is not a valid save
+     * @throws RuntimeException if an IOException occurs during the read operation.
+     */
+    public static Loaded load(String filename) {
+        try (FileChannel channel = FileChannel.open(new File(filename).toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+                // 用带位置的读取，通道的位置仍在文件开头
+            }
+            if (!magic.hasRemaining() && magic.getInt(0) == MAGIC) {
+                return decode(channel, channel.size());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        // 旧版本的文本存档很小，整个读入
+        return decodeText(FileUtils.readFile(filename));
+    }
+
+    // 返回存档文件末尾的CRC，用于确认move journal属于这个存档；只读取最后4个字节
+    static int checksum(String filename) {
+        ByteBuffer buffer = FileUtils.readFileEnd(filename, CRC_BYTES);
+        if (buffer.remaining() < CRC_BYTES) {
+            throw corrupt("file is truncated");
+        }
+        return buffer.getInt();
+    }
+
+    /*
+        头部之后是压缩的tile数据，最后是tile数据的长度和CRC。
+        长度放在末尾，这样可以边压缩边写出，不需要事先知道压缩后的大小；
+        CRC在写出每一块时累加，覆盖它之前的所有字节。返回写在末尾的CRC。
+    */
+    static int write(WritableByteChannel channel, World world, long seed) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_BYTES);
+        CRC32 crc = new CRC32();
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.putLong(seed);
+        out.putInt(world.getWidth());
+        out.putInt(world.getHeight());
+        out.put((byte) world.getConfig().mstMode().ordinal());
+        out.put((byte) world.getConfig().generatorVersion().ordinal());
+        out.putInt(world.getAvatarX());
+        out.putInt(world.getAvatarY());
+
+        long tileDataLength = 0;
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(world.tileIds());
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!out.hasRemaining()) {
+                    flush(channel, out, crc);
+                }
+                int before = out.position();
+                deflater.deflate(out);
+                tileDataLength += out.position() - before;
+            }
+        } finally {
+            deflater.end();
+        }
+        if (tileDataLength > Integer.MAX_VALUE) {
+            throw new IOException("World is too large to save: " + tileDataLength + " bytes");
+        }
+
+        if (out.remaining() < 4) {
+            flush(channel, out, crc);
+        }
+        out.putInt((int) tileDataLength);
+        flush(channel, out, crc);
+        int checksum = (int) crc.getValue();
+        out.putInt(checksum);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        return checksum;
+    }
+
+    // 把缓冲区中的数据写入通道，同时累加CRC
+    private static void flush(WritableByteChannel channel, ByteBuffer out, CRC32 crc)
+            throws IOException {
+        out.flip();
+        crc.update(out.duplicate());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /*
+        解码二进制存档，channel应位于存档开头，size是存档的总字节数。
+        按块顺序读取：每块先累加CRC，再交给Inflater解压到网格中，只需要一个固定大小的缓冲区。
+        CRC要读到文件末尾才能检查，所以tile数据有问题时先记下来，继续读完再报告，
+        这样损坏的文件总是先报告CRC不一致。
+    */
+    static Loaded decode(ReadableByteChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+        CRC32 crc = new CRC32();
+        if (size < 5) {
+            throw corrupt("file is truncated");
+        }
+        readFully(channel, buffer, 5, crc);
+        if (buffer.getInt() != MAGIC) {
+            throw corrupt("not a save file");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw corrupt("unsupported version " + version);
+        }
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw corrupt("file is truncated");
+        }
+        readFully(channel, buffer, HEADER_BYTES - 5, crc);
+        long seed = buffer.getLong();
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int mode = buffer.get();
+        int generator = buffer.get();
+        int avatarX = buffer.getInt();
+        int avatarY = buffer.getInt();
+
+        // 头部的字段在CRC检查之前只用来决定网格大小，无效时同样先读完再报告
+        String problem = null;
+        WorldConfig config = null;
+        if (mode < 0 || mode >= MstMode.values().length) {
+            problem = "unknown MST mode " + mode;
+        } else if (generator < 0 || generator >= GeneratorVersion.values().length) {
+            problem = "unknown generator version " + generator;
+        } else {
+            try {
+                config = new WorldConfig(width, height, MstMode.values()[mode],
+                        GeneratorVersion.values()[generator]);
+            } catch (IllegalArgumentException ex) {
+                problem = "invalid world size " + width + "x" + height;
+            }
+        }
+
+        long tileDataLength = size - HEADER_BYTES - TRAILER_BYTES;
+        // DEFLATE每个输入字节最多解压出约1032个字节，tile数据不可能填满的网格不必分配
+        if (config != null && (long) width * height > MAX_INFLATE_RATIO * (tileDataLength + 16)) {
+            problem = "tile data does not match the world size";
+            config = null;
+        }
+        byte[] tiles = config == null ? null : new byte[width * height];
+        byte[] spare = new byte[1];  // 网格已满之后用来检查是否还有多余的数据
+        int filled = 0;
+        Inflater inflater = new Inflater();
+        try {
+            for (long remaining = tileDataLength; remaining > 0; ) {
+                int length = (int) Math.min(CHUNK_BYTES, remaining);
+                readFully(channel, buffer, length, crc);
+                remaining -= length;
+                if (problem == null) {
+                    try {
+                        filled = inflate(inflater, buffer, tiles, filled, spare);
+                    } catch (DataFormatException ex) {
+                        problem = "tile data is not valid DEFLATE data";
+                    }
+                }
+            }
+            if (problem == null && (filled != tiles.length || !inflater.finished())) {
+                problem = "tile data does not match the world size";
+            }
+        } finally {
+            inflater.end();
+        }
+
+        readFully(channel, buffer, 4, crc);  // 长度也在CRC覆盖的范围内
+        int storedLength = buffer.getInt();
+        int expectedCrc = (int) crc.getValue();
+        readFully(channel, buffer, CRC_BYTES, null);
+        if (buffer.getInt() != expectedCrc) {
+            throw corrupt("checksum mismatch");
+        }
+        if (problem != null) {
+            throw corrupt(problem);
+        }
+        if (storedLength != tileDataLength) {
+            throw corrupt("tile data length mismatch");
+        }
+        for (byte tile : tiles) {
+            Tileset.fromId(tile);  // 检查tile id是否有效
+        }
+        return new Loaded(seed, new World(config, tiles, avatarX, avatarY));
+    }
+
+    // 把buffer中的输入全部解压到tiles[filled..]中，返回解压出的总字节数；
+    // 网格已满之后解压到spare中，返回值大于网格大小说明数据多于网格
+    private static int inflate(Inflater inflater, ByteBuffer buffer, byte[] tiles, int filled,
+                               byte[] spare) throws DataFormatException {
+        inflater.setInput(buffer);
+        while (!inflater.finished() && !inflater.needsInput()) {
+            int n = filled < tiles.length
+                    ? inflater.inflate(tiles, filled, tiles.length - filled)
+                    : inflater.inflate(spare);
+            if (n == 0 && inflater.needsDictionary()) {
+                throw new DataFormatException("preset dictionaries are not used");
+            }
+            filled += n;
+        }
+        return filled;
+    }
+
+    // 从通道中读取恰好length个字节到buffer中并累加CRC（crc为null时不累加），读取后buffer可以直接读
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer, int length, CRC32 crc)
+            throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw corrupt("file is truncated");
+            }
+        }
+        buffer.flip();
+        if (crc != null) {
+            crc.update(buffer.duplicate());
+        }
+    }
+
+    // 解析旧版本的文本存档。网格不完整或无法识别时，按照旧的方式用种子重新生成世界
+    static Loaded decodeText(String content) {
+        String[] lines = content.split("\n");
+
+        // 恢复用于初始化随机数生成器的种子
+        long seed = Long.parseLong(lines[0].trim());
+
+        // 获取原先avatar的位置
+        String[] avatarPosition = lines[1].trim().split(" ");
+        int avatarX = Integer.parseInt(avatarPosition[0]);
+        int avatarY = Integer.parseInt(avatarPosition[1]);
+
+        byte[] tiles = parseTextGrid(lines);
+        World world;
+        if (tiles != null) {
+            int height = lines.length - 2;
+            int width = tiles.length / height;
+            world = new World(WorldConfig.DEFAULT.withSize(width, height), tiles, avatarX, avatarY);
+        } else {
+            world = new World(new Random(seed));
+            world.setAvatarPosition(avatarX, avatarY);
+        }
+        return new Loaded(seed, world);
+    }
+
+    // TETile.toString的网格从最上面一行开始输出，这里转换回按列存储的tile id网格
+    private static byte[] parseTextGrid(String[] lines) {
+        int height = lines.length - 2;
+        if (height < World.MIN_HEIGHT) {
+            return null;
+        }
+        int width = lines[2].length();
+        if (width < World.MIN_WIDTH) {
+            return null;
+        }
+        byte[] tiles = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            String line = lines[row + 2];
+            if (line.length() != width) {
+                return null;
+            }
+            int y = height - 1 - row;
+            for (int x = 0; x < width; x++) {
+                TETile tile = Tileset.fromCharacter(line.charAt(x));
+                if (tile == null) {
+                    return null;
+                }
+                tiles[x * height + y] = (byte) tile.id();
+            }
+        }
+        return tiles;
+    }
+
+    private static IllegalArgumentException corrupt(String reason) {
+        return new IllegalArgumentException("Corrupt save file: " + reason);
+    }
+}
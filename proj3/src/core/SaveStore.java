@@ -0,0 +1,106 @@
+package core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+/**
+ * Where a replayed session saves its game on ":Q" and loads it from on "L". Sessions replayed
+ * side by side each get their own store, so they do not overwrite each other's saves.
+ */
+public interface SaveStore {
+    /**
+     * Saves the game, replacing the previous save in this store.
+     * @param world the world to save
+     * @param seed the seed the world was generated from
+     */
+    void save(World world, long seed);
+
+    /**
+     * Loads the last game saved to this store.
+     * @return the loaded game
+     * @throws IllegalStateException if nothing has been saved
+     */
+    SaveGame.Loaded load();
+
+    /**
+     * The save files in the working directory that the game itself uses.
+     * @return the store
+     */
+    static SaveStore files() {
+        return new SaveStore() {
+            @Override
+            public void save(World world, long seed) {
+                SaveGame.save(world, seed);
+            }
+
+            @Override
+            public SaveGame.Loaded load() {
+                if (!SaveGame.exists()) {
+                    throw new IllegalStateException("No saved game to load.");
+                }
+                return SaveGame.load();
+            }
+        };
+    }
+
+    /**
+     * A save file in the given directory, e.g. a temporary directory per session.
+     * @param directory the directory to keep the save file in; must exist
+     * @return the store
+     */
+    static SaveStore inDirectory(File directory) {
+        String filename = new File(directory, SaveGame.FILENAME).getPath();
+        return new SaveStore() {
+            @Override
+            public void save(World world, long seed) {
+                SaveGame.save(filename, world, seed);
+            }
+
+            @Override
+            public SaveGame.Loaded load() {
+                if (!new File(filename).exists()) {
+                    throw new IllegalStateException("No saved game to load.");
+                }
+                return SaveGame.load(filename);
+            }
+        };
+    }
+
+    /**
+     * A save kept in memory, in the same binary format as a save file, so loading restores
+     * exactly what loading the file would.
+     * @return the store
+     */
+    static SaveStore inMemory() {
+        return new SaveStore() {
+            private byte[] saved;
+
+            @Override
+            public void save(World world, long seed) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try {
+                    SaveGame.write(Channels.newChannel(out), world, seed);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                saved = out.toByteArray();
+            }
+
+            @Override
+            public SaveGame.Loaded load() {
+                if (saved == null) {
+                    throw new IllegalStateException("No saved game to load.");
+                }
+                try {
+                    return SaveGame.decode(Channels.newChannel(new ByteArrayInputStream(saved)),
+                            saved.length);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+    }
+}
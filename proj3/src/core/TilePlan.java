@@ -0,0 +1,304 @@
+package core;
+
+import tileengine.Tileset;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/*
+    生成世界分两个阶段：规划阶段按顺序记录房间和走廊要写入的矩形，光栅化阶段再把这些矩形写入网格。
+    光栅化按列分块，在ForkJoinPool中并行执行，结果与按顺序逐格写入完全一致：
+
+    - 覆盖写入（房间的地板和墙、走廊的地板）无条件写入，同一格子以最后一次写入为准。
+      每个块按规划顺序处理与它相交的覆盖写入，因此每个格子的最终值与顺序写入相同。
+    - 条件写入（走廊两侧的墙）只在格子为NOTHING时写入WALL。覆盖写入不会写入NOTHING，
+      所以一个格子在顺序执行时最终是WALL，当且仅当它没有被覆盖写入过、并且至少有一次条件写入。
+      这与先完成所有覆盖写入、再把仍为NOTHING的条件写入格子改为WALL的结果相同，与顺序无关。
+
+    规划房间时需要知道填充率，这里用一个占用位图代替真正的网格，按列整段设置，
+    每次64个格子。
+*/
+final class TilePlan {
+    // 光栅化时每块的列数，块内的格子在网格数组中是连续的
+    private static final int CHUNK_COLUMNS = 64;
+    // 格子数不超过这个值的块范围直接在当前线程中光栅化，不再拆分
+    private static final int SEQUENTIAL_CELLS = 1 << 16;
+    // 每个矩形占用的int数：x0, y0, x1, y1（闭区间）, tile id, 记录顺序
+    private static final int FIELDS = 6;
+
+    private static final byte WALL = (byte) Tileset.WALL.id();
+    private static final byte FLOOR = (byte) Tileset.FLOOR.id();
+    private static final byte NOTHING = (byte) Tileset.NOTHING.id();
+
+    private final int width;
+    private final int height;
+    private final long[] occupied;  // 占用位图，下标与网格相同
+    private final RectList overwrites = new RectList();
+    private final RectList conditionalWalls = new RectList();
+    private int recorded;  // 已记录的矩形数，两个列表共用，用于恢复它们之间的先后顺序
+    private int usedTiles;
+    private int floorTiles;
+    private int[] columnFloors;  // 光栅化之后每一列的FLOOR格子数
+
+    TilePlan(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.occupied = new long[(int) (((long) width * height + 63) >>> 6)];
+    }
+
+    // 记录一个房间：外圈是墙，内部是地板。返回房间新占用的格子数
+    int addRoom(int x, int y, int roomWidth, int roomHeight) {
+        overwrites.add(x - 1, y - 1, x + roomWidth, y + roomHeight, WALL, recorded++);
+        overwrites.add(x, y, x + roomWidth - 1, y + roomHeight - 1, FLOOR, recorded++);
+        int added = 0;
+        for (int i = x - 1; i <= x + roomWidth; i++) {
+            added += occupy(i * height + y - 1, i * height + y + roomHeight + 1);
+        }
+        return added;
+    }
+
+    // 记录一条从(startX, startY)出发，先水平后竖直到达(endX, endY)的走廊，以及走廊周围的墙
+    void addCorridor(int startX, int startY, int endX, int endY) {
+        int x0 = Math.min(startX, endX);
+        int x1 = Math.max(startX, endX);
+        overwrites.add(x0, startY, x1, startY, FLOOR, recorded++);
+        conditionalWalls.add(x0, startY - 1, x1, startY + 1, WALL, recorded++);
+        conditionalWalls.add(x0 - 1, startY, x0 - 1, startY, WALL, recorded++);
+        conditionalWalls.add(x1 + 1, startY, x1 + 1, startY, WALL, recorded++);
+
+        int y0 = Math.min(startY, endY);
+        int y1 = Math.max(startY, endY);
+        overwrites.add(endX, y0, endX, y1, FLOOR, recorded++);
+        conditionalWalls.add(endX - 1, y0, endX + 1, y1, WALL, recorded++);
+        conditionalWalls.add(endX, y0 - 1, endX, y0 - 1, WALL, recorded++);
+        conditionalWalls.add(endX, y1 + 1, endX, y1 + 1, WALL, recorded++);
+    }
+
+    // 把规划好的矩形写入网格，tiles中原有的内容应当全部是NOTHING
+    // 在ForkJoinPool的工作线程中调用时使用该线程所在的池，否则使用公共池
+    void rasterize(byte[] tiles) {
+        int chunks = (width + CHUNK_COLUMNS - 1) / CHUNK_COLUMNS;
+        int[][] overwriteBuckets = overwrites.bucketByChunk(chunks);
+        int[][] wallBuckets = conditionalWalls.bucketByChunk(chunks);
+        int[] used = new int[chunks];
+        int[] floors = new int[chunks];
+        columnFloors = new int[width];
+        new RasterizeTask(tiles, 0, chunks, overwriteBuckets, wallBuckets, used, floors).invoke();
+        usedTiles = 0;
+        floorTiles = 0;
+        for (int c = 0; c < chunks; c++) {
+            usedTiles += used[c];
+            floorTiles += floors[c];
+        }
+    }
+
+    // 不分块、不并行，按规划顺序逐格写入，与生成器最初直接写网格的方式相同。
+    // rasterize的结果必须与它完全一致，测试用它来检查并行光栅化
+    void rasterizeSequentially(byte[] tiles) {
+        int o = 0;
+        int w = 0;
+        while (o < overwrites.size || w < conditionalWalls.size) {
+            if (w == conditionalWalls.size
+                    || (o < overwrites.size && overwrites.order(o) < conditionalWalls.order(w))) {
+                int r = o++ * FIELDS;
+                int[] rects = overwrites.rects;
+                for (int x = rects[r]; x <= rects[r + 2]; x++) {
+                    for (int y = rects[r + 1]; y <= rects[r + 3]; y++) {
+                        tiles[x * height + y] = (byte) rects[r + 4];
+                    }
+                }
+            } else {
+                int r = w++ * FIELDS;
+                int[] rects = conditionalWalls.rects;
+                for (int x = rects[r]; x <= rects[r + 2]; x++) {
+                    for (int y = rects[r + 1]; y <= rects[r + 3]; y++) {
+                        if (tiles[x * height + y] == NOTHING) {
+                            tiles[x * height + y] = WALL;
+                        }
+                    }
+                }
+            }
+        }
+        usedTiles = 0;
+        floorTiles = 0;
+        columnFloors = new int[width];
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != NOTHING) {
+                usedTiles++;
+                if (tiles[i] == FLOOR) {
+                    floorTiles++;
+                    columnFloors[i / height]++;
+                }
+            }
+        }
+    }
+
+    // 光栅化之后网格中非NOTHING的格子数
+    int usedTiles() {
+        return usedTiles;
+    }
+
+    // 光栅化之后网格中FLOOR的格子数
+    int floorTiles() {
+        return floorTiles;
+    }
+
+    // 光栅化之后每一列的FLOOR格子数，下标是x
+    int[] columnFloors() {
+        return columnFloors;
+    }
+
+    // 将位图中[from, to)的位全部置1，返回其中原来为0的位数
+    private int occupy(int from, int to) {
+        int added = 0;
+        while (from < to) {
+            int word = from >>> 6;
+            int end = Math.min(to, (word + 1) << 6);
+            long mask = (-1L >>> (64 - (end - from))) << (from & 63);
+            added += Long.bitCount(mask & ~occupied[word]);
+            occupied[word] |= mask;
+            from = end;
+        }
+        return added;
+    }
+
+    // 光栅化一个列块
+    private void rasterizeChunk(byte[] tiles, int chunk, int[][] overwriteBuckets, int[][] wallBuckets,
+                                int[] used, int[] floors) {
+        int columnFrom = chunk * CHUNK_COLUMNS;
+        int columnTo = Math.min(width, columnFrom + CHUNK_COLUMNS) - 1;
+        int[] rects = overwrites.rects;
+        int[] indices = overwriteBuckets[1];
+        for (int k = overwriteBuckets[0][chunk]; k < overwriteBuckets[0][chunk + 1]; k++) {
+            int r = indices[k] * FIELDS;
+            int x0 = Math.max(rects[r], columnFrom);
+            int x1 = Math.min(rects[r + 2], columnTo);
+            for (int x = x0; x <= x1; x++) {
+                Arrays.fill(tiles, x * height + rects[r + 1], x * height + rects[r + 3] + 1,
+                        (byte) rects[r + 4]);
+            }
+        }
+        rects = conditionalWalls.rects;
+        indices = wallBuckets[1];
+        for (int k = wallBuckets[0][chunk]; k < wallBuckets[0][chunk + 1]; k++) {
+            int r = indices[k] * FIELDS;
+            int x0 = Math.max(rects[r], columnFrom);
+            int x1 = Math.min(rects[r + 2], columnTo);
+            for (int x = x0; x <= x1; x++) {
+                for (int i = x * height + rects[r + 1]; i <= x * height + rects[r + 3]; i++) {
+                    if (tiles[i] == NOTHING) {
+                        tiles[i] = WALL;
+                    }
+                }
+            }
+        }
+        int usedInChunk = 0;
+        int floorsInChunk = 0;
+        for (int x = columnFrom; x <= columnTo; x++) {
+            int floorsInColumn = 0;
+            for (int i = x * height; i < (x + 1) * height; i++) {
+                if (tiles[i] != NOTHING) {
+                    usedInChunk++;
+                    if (tiles[i] == FLOOR) {
+                        floorsInColumn++;
+                    }
+                }
+            }
+            columnFloors[x] = floorsInColumn;  // 每块只写自己的列
+            floorsInChunk += floorsInColumn;
+        }
+        used[chunk] = usedInChunk;
+        floors[chunk] = floorsInChunk;
+    }
+
+    // 把[from, to)范围内的列块不断对半拆分，直到格子数足够少再依次光栅化
+    private class RasterizeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] tiles;
+        private final int from;
+        private final int to;
+        private final int[][] overwriteBuckets;
+        private final int[][] wallBuckets;
+        private final int[] used;
+        private final int[] floors;
+
+        RasterizeTask(byte[] tiles, int from, int to, int[][] overwriteBuckets, int[][] wallBuckets,
+                      int[] used, int[] floors) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.overwriteBuckets = overwriteBuckets;
+            this.wallBuckets = wallBuckets;
+            this.used = used;
+            this.floors = floors;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || (long) (to - from) * CHUNK_COLUMNS * height <= SEQUENTIAL_CELLS) {
+                for (int c = from; c < to; c++) {
+                    rasterizeChunk(tiles, c, overwriteBuckets, wallBuckets, used, floors);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RasterizeTask(tiles, from, mid, overwriteBuckets, wallBuckets, used, floors),
+                    new RasterizeTask(tiles, mid, to, overwriteBuckets, wallBuckets, used, floors));
+        }
+    }
+
+    // 按顺序记录的矩形列表
+    private static final class RectList {
+        private int[] rects = new int[FIELDS * 64];
+        private int size;
+
+        void add(int x0, int y0, int x1, int y1, byte tile, int order) {
+            if (size * FIELDS == rects.length) {
+                rects = Arrays.copyOf(rects, rects.length * 2);
+            }
+            int r = size * FIELDS;
+            rects[r] = x0;
+            rects[r + 1] = y0;
+            rects[r + 2] = x1;
+            rects[r + 3] = y1;
+            rects[r + 4] = tile;
+            rects[r + 5] = order;
+            size++;
+        }
+
+        int order(int i) {
+            return rects[i * FIELDS + 5];
+        }
+
+        // 按列块分桶，返回{offsets, indices}：第c块的矩形下标为indices[offsets[c]..offsets[c+1])，
+        // 每个桶中的矩形保持记录时的顺序
+        int[][] bucketByChunk(int chunks) {
+            int[] offsets = new int[chunks + 1];
+            for (int i = 0; i < size; i++) {
+                for (int c = firstChunk(i); c <= lastChunk(i); c++) {
+                    offsets[c + 1]++;
+                }
+            }
+            for (int c = 0; c < chunks; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            int[] next = Arrays.copyOf(offsets, chunks);
+            int[] indices = new int[offsets[chunks]];
+            for (int i = 0; i < size; i++) {
+                for (int c = firstChunk(i); c <= lastChunk(i); c++) {
+                    indices[next[c]++] = i;
+                }
+            }
+            return new int[][] {offsets, indices};
+        }
+
+        private int firstChunk(int i) {
+            return rects[i * FIELDS] / CHUNK_COLUMNS;
+        }
+
+        private int lastChunk(int i) {
+            return rects[i * FIELDS + 2] / CHUNK_COLUMNS;
+        }
+    }
+}
@@ -1,79 +1,231 @@
 package core;
 
 import tileengine.TETile;
+import tileengine.TileSource;
 import tileengine.Tileset;
 import utils.RandomUtils;
-import utils.Edge;
+import utils.EdgeList;
 import utils.Room;
+import utils.RoomGraph;
+import utils.RoomIndex;
 import utils.UnionFind;
 
 import java.util.*;
 
-public class World {
+public class World implements TileSource {
     /*
         世界显示的时候以左下角为坐标原点，横轴为x轴，纵轴为y轴，在数组中行代表横轴，列代表纵轴，原点在左上角，与显示画面有一定出入，需要注意！！！
     */
-    private static final int WIDTH = 80;  // 定义世界宽度
-    private static final int HEIGHT = 30; // 定义世界高度
-    private final TETile[][] world;  // 世界的二维网格
+    public static final int DEFAULT_WIDTH = 80;  // 默认世界宽度
+    public static final int DEFAULT_HEIGHT = 30; // 默认世界高度
+    // 房间最大为14x11，再加上两侧的墙和边界，世界至少要这么大才能放下一个房间
+    public static final int MIN_WIDTH = 17;
+    public static final int MIN_HEIGHT = 14;
+    // 单个房间最多尝试放置的次数，超过后认为世界已经放不下新房间，停止生成房间
+    public static final int MAX_PLACEMENT_ATTEMPTS = 10000;
+    // NEAREST_NEIGHBORS模式下每个房间保留的候选边数
+    private static final int MST_NEIGHBORS = 8;
+    // 每个线程复用同一个UnionFind生成最小生成树，批量生成世界时不必每次重新分配数组
+    private static final ThreadLocal<UnionFind> UNION_FIND = ThreadLocal.withInitial(() -> new UnionFind(0));
+
+    private static final byte AVATAR = (byte) Tileset.AVATAR.id();
+    private static final byte WALL = (byte) Tileset.WALL.id();
+    private static final byte FLOOR = (byte) Tileset.FLOOR.id();
+    private static final byte NOTHING = (byte) Tileset.NOTHING.id();
+
+    private final WorldConfig config; // 生成参数
+    private final int width;   // 世界宽度
+    private final int height;  // 世界高度
+    // 世界网格，按列存储Tileset中的tile id，(x, y)对应下标 x * height + y，同一列的格子在内存中相邻
+    private byte[] tiles;
+    // 网格是否与WorldCache中的世界共享；共享的网格在第一次被修改之前复制一份（写时复制）
+    private boolean sharedTiles;
     private final List<Room> rooms = new ArrayList<>(); // 房间
-    private int avatarX; // 记录avatar的坐标
+    private final RoomIndex roomIndex; // 房间的空间索引，生成房间时用于快速检查重叠；从快照恢复的世界没有
+    private boolean placementExhausted; // 是否因为找不到空位而提前停止生成房间
+    private int corridorCount; // 最小生成树中连接房间的走廊数
+    private int usedTiles; // 非NOTHING的格子数，生成房间时由规划阶段维护，避免每次计算填充率都扫描整个网格
+    private int floorTiles; // FLOOR的格子数，V2生成器放置avatar时使用
+    private TilePlan plan; // 生成期间记录的写操作，光栅化之后释放
+    // avatar的坐标，avatar只记录在这里，网格中avatar所在的格子仍然是FLOOR，返回tile时再叠加上去
+    private int avatarX;
     private int avatarY;
 
     public World(Random random) {
-        world = new TETile[WIDTH][HEIGHT];  // 创建网格
+        this(random, WorldConfig.DEFAULT);
+    }
+
+    public World(Random random, int width, int height) {
+        this(random, WorldConfig.DEFAULT.withSize(width, height));
+    }
+
+    public World(Random random, WorldConfig config) {
+        this.config = config;
+        this.width = config.width();
+        this.height = config.height();
+        tiles = new byte[width * height];  // 创建网格
+        roomIndex = new RoomIndex(width, height);
         initializeWorld(random);  // 初始化世界
     }
 
-    // 初始化世界，将所有网格设置为空地，初始化avatar，生成房间
-    private void initializeWorld(Random random) {
-        for (int x = 0; x < WIDTH; x++) {
-            for (int y = 0; y < HEIGHT; y++) {
-                world[x][y] = Tileset.NOTHING;  // 将每个格子初始化
+    // 从存档中的tile id网格恢复世界，不重新生成；tiles直接作为网格使用，不会被复制
+    // 旧版本的存档在网格中也记录了avatar，这里将其还原为FLOOR
+    World(WorldConfig config, byte[] tiles, int avatarX, int avatarY) {
+        if (tiles.length != config.width() * config.height()) {
+            throw new IllegalArgumentException("Expected " + config.width() * config.height()
+                    + " tiles, got " + tiles.length);
+        }
+        this.config = config;
+        this.width = config.width();
+        this.height = config.height();
+        this.tiles = tiles;
+        roomIndex = new RoomIndex(width, height);
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == AVATAR) {
+                tiles[i] = FLOOR;
+            }
+            if (tiles[i] != NOTHING) {
+                usedTiles++;
+            }
+            if (tiles[i] == FLOOR) {
+                floorTiles++;
             }
         }
+        setAvatarPosition(avatarX, avatarY);
+    }
+
+    /*
+        WorldCache缓存的内容：生成结果中以后还会用到的部分。网格与生成它的世界共享，
+        房间只保留位置和大小（每个房间4个int），生成时使用的空间索引不保留，
+        所以缓存占用的内存就是网格加上房间数组。
+    */
+    record Snapshot(WorldConfig config, byte[] tiles, int[] rooms, boolean placementExhausted,
+                    int corridorCount, int usedTiles, int floorTiles, int avatarX, int avatarY) {
+        // 快照占用的字节数，不计对象头等固定开销
+        long bytes() {
+            return tiles.length + (long) Integer.BYTES * rooms.length;
+        }
+    }
+
+    // 从快照恢复世界，O(房间数)；网格直到第一次被修改时才复制，快照和其他从它恢复的世界不受影响
+    World(Snapshot snapshot) {
+        this.config = snapshot.config();
+        this.width = config.width();
+        this.height = config.height();
+        this.tiles = snapshot.tiles();
+        this.sharedTiles = true;
+        int[] bounds = snapshot.rooms();
+        for (int i = 0; i < bounds.length; i += 4) {
+            rooms.add(new Room(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3]));
+        }
+        this.roomIndex = null;  // 生成已经结束，不会再放置房间
+        this.placementExhausted = snapshot.placementExhausted();
+        this.corridorCount = snapshot.corridorCount();
+        this.usedTiles = snapshot.usedTiles();
+        this.floorTiles = snapshot.floorTiles();
+        this.avatarX = snapshot.avatarX();
+        this.avatarY = snapshot.avatarY();
+    }
+
+    // 返回当前状态的快照，之后本世界修改网格时先复制一份，不会影响快照
+    Snapshot snapshot() {
+        sharedTiles = true;
+        int[] bounds = new int[rooms.size() * 4];
+        for (int i = 0; i < rooms.size(); i++) {
+            Room room = rooms.get(i);
+            bounds[i * 4] = room.getX();
+            bounds[i * 4 + 1] = room.getY();
+            bounds[i * 4 + 2] = room.getWidth();
+            bounds[i * 4 + 3] = room.getHeight();
+        }
+        return new Snapshot(config, tiles, bounds, placementExhausted, corridorCount,
+                usedTiles, floorTiles, avatarX, avatarY);
+    }
+
+    // 初始化世界，将所有网格设置为空地，初始化avatar，生成房间
+    private void initializeWorld(Random random) {
+        Arrays.fill(tiles, NOTHING);  // 将每个格子初始化
 
-        // 生成房间
+        // 先规划房间和走廊，再并行写入网格
+        plan = new TilePlan(width, height);
         generateRooms(random);
+        plan.rasterize(tiles);
+        usedTiles = plan.usedTiles();
+        floorTiles = plan.floorTiles();
+        int[] columnFloors = plan.columnFloors();
+        plan = null;
 
         // 初始化avatar
-        placeAvatar(random);
+        placeAvatar(random, columnFloors);
+    }
+
+    // (x, y)在网格数组中的下标
+    private int index(int x, int y) {
+        return x * height + y;
+    }
+
+    // (x, y)是否在世界范围内
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
     }
 
     // 初始化avatar
-    private void placeAvatar(Random random) {
+    private void placeAvatar(Random random, int[] columnFloors) {
+        if (config.generatorVersion() == GeneratorVersion.V1) {
+            placeAvatarByRejection(random);
+        } else {
+            placeAvatarOnFloorCell(random, columnFloors);
+        }
+    }
+
+    // V2：在所有地板格子中只抽取一次，按列存储顺序取第k个地板格子。
+    // 光栅化时记录了每列的地板数，先跳过整列找到第k个地板所在的列，再只扫描这一列，O(宽度 + 高度)
+    private void placeAvatarOnFloorCell(Random random, int[] columnFloors) {
+        int k = RandomUtils.uniform(random, floorTiles);
+        int x = 0;
+        while (x < width && k >= columnFloors[x]) {
+            k -= columnFloors[x];
+            x++;
+        }
+        for (int y = 0; x < width && y < height; y++) {
+            if (tiles[index(x, y)] == FLOOR && k-- == 0) {
+                avatarX = x;
+                avatarY = y;
+                return;
+            }
+        }
+        throw new IllegalStateException("Floor tile count is out of sync with the grid.");
+    }
+
+    // V1：随机抽取格子直到抽中地板，地板稀疏时抽取次数没有上界；保留它是为了让已有种子生成的世界不变
+    private void placeAvatarByRejection(Random random) {
         boolean placed = false;
         while (!placed) {
-            avatarX = RandomUtils.uniform(random, 0, WIDTH);
-            avatarY = RandomUtils.uniform(random, 0, HEIGHT);
-            if (world[avatarX][avatarY].equals(Tileset.FLOOR)) {
-                world[avatarX][avatarY] = Tileset.AVATAR; // 将avatar放在初始位置
-                placed = true;
+            avatarX = RandomUtils.uniform(random, 0, width);
+            avatarY = RandomUtils.uniform(random, 0, height);
+            if (tiles[index(avatarX, avatarY)] == FLOOR) {
+                placed = true;  // avatar放在初始位置，只需记录坐标
             }
         }
     }
 
-    // 设置avatar位置，在加载存档游戏时使用
+    // 设置avatar位置，在加载存档游戏时使用，O(1)
+    // 位置必须在世界范围内并且是FLOOR，否则抛出IllegalArgumentException，损坏的存档不会导致数组越界
     public void setAvatarPosition(int avatarX, int avatarY) {
-        clearAvatar();
+        if (!inBounds(avatarX, avatarY)) {
+            throw new IllegalArgumentException("Avatar position (" + avatarX + ", " + avatarY
+                    + ") is outside the " + width + "x" + height + " world.");
+        }
+        if (tiles[index(avatarX, avatarY)] != FLOOR) {
+            throw new IllegalArgumentException("Avatar position (" + avatarX + ", " + avatarY
+                    + ") is not on the floor.");
+        }
         this.avatarX = avatarX;
         this.avatarY = avatarY;
-        world[avatarX][avatarY] = Tileset.AVATAR;
-    }
-
-    // 在设置avatar位置时，将随机生成的avatar先清除
-    private void clearAvatar() {
-        for (int x = 0; x < WIDTH; x++) {
-            for (int y = 0; y < HEIGHT; y++) {
-                if (world[x][y].equals(Tileset.AVATAR)) {
-                    world[x][y] = Tileset.FLOOR;
-                }
-            }
-        }
     }
 
-    // 根据键盘输入移动avatar
-    public void moveAvatar(char direction) {
+    // 根据键盘输入移动avatar，返回avatar是否真的移动了
+    public boolean moveAvatar(char direction) {
         int newX = avatarX;
         int newY = avatarY;
 
@@ -85,15 +237,16 @@ public class World {
             case 'a': newX -= 1; break;
             case 's': newY -= 1; break;
             case 'd': newX += 1; break;
+            default: return false;  // 其他按键不移动avatar
         }
 
         // 检查是否为FLOOR
-        if (world[newX][newY] == Tileset.FLOOR) {
-            world[avatarX][avatarY] = Tileset.FLOOR; // 重置之前位置
-            avatarX = newX;
+        if (inBounds(newX, newY) && tiles[index(newX, newY)] == FLOOR) {
+            avatarX = newX;  // 网格不需要修改，只更新avatar位置
             avatarY = newY;
-            world[avatarX][avatarY] = Tileset.AVATAR; // 更新avatar位置
+            return true;
         }
+        return false;
     }
 
 
@@ -101,35 +254,50 @@ public class World {
     private void generateRooms(Random random) {
         double fillRatio = 0.0;
         while (fillRatio < 0.5) {
-            addRandomRoom(random);  // 随机生成房间
-            fillRatio = calculateFillRatio();  // 计算填充率
+            if (!addRandomRoom(random)) {  // 随机生成房间
+                placementExhausted = true;  // 多次尝试都放不下，不再继续生成
+                break;
+            }
+            fillRatio = getFillRatio();  // 计算填充率
         }
         connectRoomsUsingMST(random);  // 连接房间，使用最小生成树
     }
 
-    // 计算当前世界的填充率
-    private double calculateFillRatio() {
-        int usedTiles = 0;
-        for (int x = 0; x < WIDTH; x++) {
-            for (int y = 0; y < HEIGHT; y++) {
-                if (world[x][y] != Tileset.NOTHING) {
-                    usedTiles++;
-                }
-            }
-        }
-        return (double) usedTiles / (WIDTH * HEIGHT);
+    // 当前世界的填充率，O(1)
+    public double getFillRatio() {
+        return (double) usedTiles / tiles.length;
+    }
+
+    // 已使用(非NOTHING)的格子数，生成结束后即为房间、走廊和墙壁所占的格子总数
+    public int getUsedTiles() {
+        return usedTiles;
+    }
+
+    // 生成房间时是否因为多次尝试都放不下新房间而提前停止
+    public boolean isPlacementExhausted() {
+        return placementExhausted;
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    // 连接房间的走廊数，所有房间连通时为房间数-1
+    public int getCorridorCount() {
+        return corridorCount;
     }
 
     // 检查两个房间是否重叠
+    // 注意：两个房间的高度都取自room1，已有种子生成的世界依赖这一判定，修改会导致同一种子生成不同的世界
     private boolean isOverlapping(Room room1, Room room2) {
-        int x1 = room1.getPosition()[0];
-        int y1 = room1.getPosition()[1];
-        int x2 = room2.getPosition()[0];
-        int y2 = room2.getPosition()[1];
-        int width1 = room1.getSize()[0];
-        int height1 = room1.getSize()[1];
-        int width2 = room2.getSize()[0];
-        int height2 = room1.getSize()[1];
+        int x1 = room1.getX();
+        int y1 = room1.getY();
+        int x2 = room2.getX();
+        int y2 = room2.getY();
+        int width1 = room1.getWidth();
+        int height1 = room1.getHeight();
+        int width2 = room2.getWidth();
+        int height2 = room1.getHeight();
 
         return x1 < x2 + width2 &&
                 x1 + width1 > x2 &&
@@ -137,8 +305,17 @@ public class World {
                 y1 + height1 > y2;
     }
 
-    // 随机生成房间并添加到世界
-    private void addRandomRoom(Random random) {
+    // 检查新房间是否与已有房间重叠，只检查空间索引中附近的房间
+    private boolean overlapsExistingRoom(Room newRoom) {
+        // isOverlapping用newRoom的高度判断，已有房间的左下角y落在(y - h, y + h)内才可能重叠，
+        // 这样的房间一定与下面的查询矩形相交
+        int h = newRoom.getHeight();
+        return roomIndex.anyMatch(newRoom.getX(), newRoom.getY() - h + 1, newRoom.getWidth(), 2 * h - 1,
+                existingRoom -> isOverlapping(newRoom, existingRoom));
+    }
+
+    // 随机生成房间并添加到世界，尝试MAX_PLACEMENT_ATTEMPTS次仍放不下时返回false
+    private boolean addRandomRoom(Random random) {
         int x = 0;
         int y = 0;
         int roomWidth = 0;
@@ -146,68 +323,78 @@ public class World {
         Room newRoom = null;
 
         boolean validRoom = false;
+        int attempts = 0;
         while (!validRoom) {
+            if (attempts++ == MAX_PLACEMENT_ATTEMPTS) {
+                return false;
+            }
             roomWidth = RandomUtils.uniform(random, 3, 15);  // 随机宽度
             roomHeight = RandomUtils.uniform(random, 3, 12); // 随机高度
 
             // 预留边界给墙
-            x = RandomUtils.uniform(random, 1, WIDTH - roomWidth - 1); // 随机X位置
-            y = RandomUtils.uniform(random, 1, HEIGHT - roomHeight - 1); // 随机Y位置
+            x = RandomUtils.uniform(random, 1, width - roomWidth - 1); // 随机X位置
+            y = RandomUtils.uniform(random, 1, height - roomHeight - 1); // 随机Y位置
 
             // 创建房间类，添加到房间集合
             newRoom = new Room(x, y, roomWidth, roomHeight);
-            validRoom = true;
 
-            // 检查与已有房间是否重叠
-            for (Room existingRoom : rooms) {
-                if (isOverlapping(newRoom, existingRoom)) {
-                    validRoom = false;  // 如果重叠，重新生成房间
-                    break;
-                }
-            }
+            // 检查与已有房间是否重叠，如果重叠，重新生成房间
+            validRoom = !overlapsExistingRoom(newRoom);
         }
         rooms.add(newRoom);
+        roomIndex.add(newRoom);
 
-        // 用地板填充房间
-        for (int i = x; i < x + roomWidth; i++) {
-            for (int j = y; j < y + roomHeight; j++) {
-                world[i][j] = Tileset.FLOOR;
-            }
-        }
-
-        // 添加墙壁
-        for (int i = x - 1; i <= x + roomWidth; i++) {
-            world[i][y - 1] = Tileset.WALL;
-            world[i][y + roomHeight] = Tileset.WALL;
-        }
-        for (int j = y - 1; j <= y + roomHeight; j++) {
-            world[x - 1][j] = Tileset.WALL;
-            world[x + roomWidth][j] = Tileset.WALL;
-        }
+        // 用地板填充房间并添加墙壁，此时只记录到规划中，同时更新已使用的格子数
+        usedTiles += plan.addRoom(x, y, roomWidth, roomHeight);
+        return true;
     }
 
 
     // 使用最小生成树算法连接房间 -- Kruskal
     private void connectRoomsUsingMST(Random random) {
-        PriorityQueue<Edge> edges = new PriorityQueue<>(Comparator.comparingInt(e -> e.distance));
-        for (int i = 0; i < rooms.size(); i++) {
-            for (int j = i + 1; j < rooms.size(); j++) {
-                int[] room1 = rooms.get(i).getCenter();
-                int[] room2 = rooms.get(j).getCenter();
-                int distance = Math.abs(room1[0] - room2[0]) + Math.abs(room1[1] - room2[1]);
-                edges.add(new Edge(i, j, distance));
+        EdgeList edges;
+        if (config.mstMode() == MstMode.NEAREST_NEIGHBORS) {
+            edges = RoomGraph.nearestNeighborEdges(rooms, MST_NEIGHBORS);  // 只考虑每个房间的近邻
+            edges.sortByDistance();
+        } else {
+            edges = RoomGraph.allPairEdges(rooms);  // 考虑所有房间对
+            edges.sortInPriorityQueueOrder();  // 距离相同的边保持原先的顺序，同一种子生成的世界不变
+        }
+        UnionFind uf = UNION_FIND.get();
+        uf.reset(rooms.size());
+        kruskal(edges, uf, random);
+
+        // 近邻图可能不连通，此时在各个连通分量之间补充候选边，保证所有房间最终连通
+        if (uf.getCount() > 1) {
+            List<Integer> representatives = new ArrayList<>();
+            for (int i = 0; i < rooms.size(); i++) {
+                if (uf.find(i) == i) {
+                    representatives.add(i);
+                }
             }
+            EdgeList bridges = new EdgeList();
+            for (int a = 0; a < representatives.size(); a++) {
+                for (int b = a + 1; b < representatives.size(); b++) {
+                    int i = representatives.get(a);
+                    int j = representatives.get(b);
+                    bridges.add(i, j, RoomGraph.distance(rooms.get(i), rooms.get(j)));
+                }
+            }
+            bridges.sortByDistance();
+            kruskal(bridges, uf, random);
         }
-        UnionFind uf = new UnionFind(rooms.size());
-        while (!edges.isEmpty() && uf.getCount() > 1) {
-            Edge edge = edges.poll();
+    }
 
-            // Edge中的room1和room2仅为int标识，并非真正的room类
+    // 按距离从小到大遍历已排好序的边，连接还不连通的两个房间
+    private void kruskal(EdgeList edges, UnionFind uf, Random random) {
+        for (int i = 0; i < edges.size() && uf.getCount() > 1; i++) {
+            // 边中的room1和room2仅为int标识，并非真正的room类
             // union返回false说明room1和room2已经在同一集合中，若不在，则连接并返回true
-            if (uf.union(edge.room1, edge.room2)) {
-                Room room1 = rooms.get(edge.room1);
-                Room room2 = rooms.get(edge.room2);
+            if (uf.union(edges.room1(i), edges.room2(i))) {
+                Room room1 = rooms.get(edges.room1(i));
+                Room room2 = rooms.get(edges.room2(i));
                 connectTwoRooms(room1, room2, random);
+                corridorCount++;
             }
         }
     }
@@ -218,27 +405,62 @@ public class World {
         int[] room1Pos = chooseRandomPosition(room1, random);
         int[] room2Pos = chooseRandomPosition(room2, random);
 
-        int startX = room1Pos[0];
-        int startY = room1Pos[1];
-        int endX = room2Pos[0];
-        int endY = room2Pos[1];
+        // 先水平后竖直铺设走廊，并在周围的空地上添加墙壁
+        plan.addCorridor(room1Pos[0], room1Pos[1], room2Pos[0], room2Pos[1]);
+    }
 
-        for (int x = Math.min(startX, endX); x <= Math.max(startX, endX); x++) {
-            world[x][startY] = Tileset.FLOOR;
-            addWallsAround(x, startY);
+    // 从(x, y)修一条走廊到离它最近的房间的中心，先水平后竖直，与房间之间的走廊一样在周围的空地上添加墙壁
+    // 生成结束后直接写入网格，ChunkedWorld用它把区块边界上的出入口与区块内的房间连通
+    void addPassage(int x, int y) {
+        Room nearest = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (Room room : rooms) {
+            int distance = Math.abs(room.getCenterX() - x) + Math.abs(room.getCenterY() - y);
+            if (distance < nearestDistance) {
+                nearest = room;
+                nearestDistance = distance;
+            }
+        }
+        if (nearest == null) {
+            return;
+        }
+        int endX = nearest.getCenterX();
+        int endY = nearest.getCenterY();
+        for (int i = Math.min(x, endX); i <= Math.max(x, endX); i++) {
+            carveFloor(i, y);
         }
-        for (int y = Math.min(startY, endY); y <= Math.max(startY, endY); y++) {
-            world[endX][y] = Tileset.FLOOR;
-            addWallsAround(endX, y);
+        for (int j = Math.min(y, endY); j <= Math.max(y, endY); j++) {
+            carveFloor(endX, j);
         }
     }
 
-    // 在地板周围添加墙壁
-    private void addWallsAround(int x, int y) {
-        if (world[x][y - 1] == Tileset.NOTHING) world[x][y - 1] = Tileset.WALL;
-        if (world[x][y + 1] == Tileset.NOTHING) world[x][y + 1] = Tileset.WALL;
-        if (world[x - 1][y] == Tileset.NOTHING) world[x - 1][y] = Tileset.WALL;
-        if (world[x + 1][y] == Tileset.NOTHING) world[x + 1][y] = Tileset.WALL;
+    // 将(x, y)设为地板，并在周围世界范围内的空地上添加墙壁
+    private void carveFloor(int x, int y) {
+        setTile(x, y, FLOOR);
+        int[][] neighbors = {{x, y - 1}, {x, y + 1}, {x - 1, y}, {x + 1, y}};
+        for (int[] neighbor : neighbors) {
+            if (inBounds(neighbor[0], neighbor[1]) && tiles[index(neighbor[0], neighbor[1])] == NOTHING) {
+                setTile(neighbor[0], neighbor[1], WALL);
+            }
+        }
+    }
+
+    // 生成结束后修改网格，维护已使用格子和地板格子的计数
+    private void setTile(int x, int y, byte tile) {
+        if (sharedTiles) {
+            tiles = tiles.clone();
+            sharedTiles = false;
+        }
+        int i = index(x, y);
+        if (tiles[i] == NOTHING) {
+            usedTiles++;
+        } else if (tiles[i] == FLOOR) {
+            floorTiles--;
+        }
+        if (tile == FLOOR) {
+            floorTiles++;
+        }
+        tiles[i] = tile;
     }
 
     private int[] chooseRandomPosition(Room room, Random random) {
@@ -262,17 +484,44 @@ public class World {
     }
 
 
-    // 返回世界
+    // 返回世界，每次调用都会根据tile id网格重新生成一份TETile二维数组
     public TETile[][] getWorld() {
+        TETile[][] world = new TETile[width][height];
+        for (int x = 0; x < width; x++) {
+            int column = index(x, 0);
+            for (int y = 0; y < height; y++) {
+                world[x][y] = Tileset.fromId(tiles[column + y]);
+            }
+        }
+        world[avatarX][avatarY] = Tileset.AVATAR;
         return world;
     }
 
+    // 返回(x, y)处的tile，不需要生成整个TETile二维数组
+    @Override
+    public TETile getTile(int x, int y) {
+        if (x == avatarX && y == avatarY) {
+            return Tileset.AVATAR;
+        }
+        return Tileset.fromId(tiles[index(x, y)]);
+    }
+
+    // 世界网格的tile id数组本身（不含avatar，avatar所在的格子是FLOOR），供同一个包中的存档代码直接读取，调用方不能修改
+    // 网格可能与WorldCache中的其他世界共享
+    byte[] tileIds() {
+        return tiles;
+    }
+
+    public WorldConfig getConfig() {
+        return config;
+    }
+
     public int getWidth() {
-        return WIDTH;
+        return width;
     }
 
     public int getHeight() {
-        return HEIGHT;
+        return height;
     }
 
     public int getAvatarX() {
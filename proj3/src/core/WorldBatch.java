@@ -0,0 +1,127 @@
+package core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Generates many worlds headlessly in parallel on a fork-join pool. Every world gets its own
+ * Random seeded with its seed, so the result for a seed is identical to
+ * {@code new World(new Random(seed), config)} no matter which thread builds it.
+ *
+ * Results are handed to the sink as soon as each world is finished, in no particular order and
+ * from several threads at once, so the sink must be thread-safe. Nothing is retained by the
+ * batch itself, so memory use does not grow with the number of seeds.
+ */
+public class WorldBatch implements AutoCloseable {
+    // 每个子任务至少生成这么多个世界，避免任务划分得过细
+    private static final int MIN_SEEDS_PER_TASK = 4;
+
+    /**
+     * One generated world together with the seed that produced it.
+     * @param seed the seed passed to Random
+     * @param world the generated world; getUsedTiles, getRoomCount etc. give its statistics
+     * @param generationNanos wall-clock time spent generating this world
+     */
+    public record Result(long seed, World world, long generationNanos) { }
+
+    private final WorldConfig config;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a batch generator using one worker per available processor.
+     * @param config the settings every world is generated with
+     */
+    public WorldBatch(WorldConfig config) {
+        this(config, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param config the settings every world is generated with
+     * @param parallelism the number of worker threads
+     */
+    public WorldBatch(WorldConfig config, int parallelism) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config cannot be null.");
+        }
+        this.config = config;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Generates the worlds for every seed in [fromSeed, toSeed) and streams them to the sink.
+     * Returns once all of them have been delivered.
+     * @param fromSeed first seed, inclusive
+     * @param toSeed last seed, exclusive
+     * @param sink receives each result; called concurrently from worker threads
+     * @throws IllegalArgumentException if toSeed < fromSeed or the range holds more than
+     *                                  Integer.MAX_VALUE seeds
+     */
+    public void generate(long fromSeed, long toSeed, Consumer<Result> sink) {
+        if (toSeed < fromSeed || toSeed - fromSeed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid seed range: [" + fromSeed + ", " + toSeed + ")");
+        }
+        run((int) (toSeed - fromSeed), i -> fromSeed + i, sink);
+    }
+
+    /**
+     * Generates the worlds for the given seeds and streams them to the sink. Returns once all
+     * of them have been delivered.
+     * @param seeds the seeds to generate
+     * @param sink receives each result; called concurrently from worker threads
+     */
+    public void generate(long[] seeds, Consumer<Result> sink) {
+        if (seeds == null) {
+            throw new IllegalArgumentException("Seeds cannot be null.");
+        }
+        long[] copy = seeds.clone();
+        run(copy.length, i -> copy[i], sink);
+    }
+
+    private void run(int count, IntToLongFunction seedAt, Consumer<Result> sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null.");
+        }
+        pool.invoke(new GenerateTask(0, count, seedAt, sink));
+    }
+
+    /** Shuts down the worker threads. */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // 把[from, to)区间内的种子不断对半拆分，直到足够小再依次生成
+    private class GenerateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntToLongFunction seedAt;
+        private final Consumer<Result> sink;
+
+        GenerateTask(int from, int to, IntToLongFunction seedAt, Consumer<Result> sink) {
+            this.from = from;
+            this.to = to;
+            this.seedAt = seedAt;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_SEEDS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    long seed = seedAt.applyAsLong(i);
+                    long start = System.nanoTime();
+                    World world = new World(new Random(seed), config);
+                    sink.accept(new Result(seed, world, System.nanoTime() - start));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GenerateTask(from, mid, seedAt, sink), new GenerateTask(mid, to, seedAt, sink));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Remembers recently generated worlds so that asking for the same seed again does not run the
+ * generator again. Worlds are keyed by seed and WorldConfig, which covers the size, MST mode
+ * and generator version, so a cached world is always the one
+ * {@code new World(new Random(seed), config)} would generate.
+ *
+ * The cache keeps a compact snapshot of each world: the tile grid, the room bounds and the
+ * statistics, but not the spatial index used while placing rooms. Every call returns a new
+ * World rebuilt from the snapshot that shares its tile grid with it. The avatar position
+ * belongs to each returned world alone, and a world copies the grid the first time its tiles
+ * are changed, so nothing a caller does to a returned world reaches the cache or other callers.
+ *
+ * The cache is limited by a memory budget for the snapshots (one byte per tile plus 16 bytes
+ * per room); when it is exceeded, the least recently used worlds are dropped. The cache is
+ * thread-safe; worlds are generated outside the lock, so threads asking for different seeds do
+ * not wait for each other.
+ */
+public class WorldCache {
+    private record Key(long seed, WorldConfig config) { }
+
+    private final long memoryBudgetBytes;
+    // accessOrder为true时按访问顺序排列，最久未访问的世界在最前面
+    private final LinkedHashMap<Key, World.Snapshot> worlds = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param memoryBudgetBytes how much memory the cached snapshots may use
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public WorldCache(long memoryBudgetBytes) {
+        if (memoryBudgetBytes < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative: " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Returns the world generated from the seed with the default settings.
+     * @param seed the seed passed to Random
+     * @return a world of the caller's own
+     */
+    public World get(long seed) {
+        return get(seed, WorldConfig.DEFAULT);
+    }
+
+    /**
+     * Returns the world generated from the seed with the given settings, generating it only if
+     * it is not cached.
+     * @param seed the seed passed to Random
+     * @param config the settings to generate with
+     * @return a world of the caller's own
+     * @throws IllegalArgumentException if config is null
+     */
+    public World get(long seed, WorldConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config cannot be null.");
+        }
+        Key key = new Key(seed, config);
+        World.Snapshot cached;
+        synchronized (this) {
+            cached = worlds.get(key);
+            if (cached != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (cached != null) {
+            return new World(cached);
+        }
+
+        // 新生成的世界直接交给调用方，缓存只保留它在生成结束时的快照
+        World generated = new World(new Random(seed), config);
+        put(key, generated.snapshot());
+        return generated;
+    }
+
+    // 放入新生成的世界，超出预算时淘汰最久未使用的世界；单个世界就超出预算时不缓存
+    private synchronized void put(Key key, World.Snapshot snapshot) {
+        long bytes = snapshot.bytes();
+        if (bytes > memoryBudgetBytes || worlds.containsKey(key)) {
+            return;  // 另一个线程可能同时生成了同一个世界，保留先放入的那个
+        }
+        worlds.put(key, snapshot);
+        cachedBytes += bytes;
+        Iterator<Map.Entry<Key, World.Snapshot>> eldest = worlds.entrySet().iterator();
+        while (cachedBytes > memoryBudgetBytes) {
+            cachedBytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    // 从缓存中直接返回的次数
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    // 需要重新生成的次数
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    // 当前缓存的世界数
+    public synchronized int size() {
+        return worlds.size();
+    }
+
+    // 当前缓存的快照占用的字节数，不超过内存预算
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+}
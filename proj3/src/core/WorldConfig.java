@@ -0,0 +1,47 @@
+package core;
+
+/**
+ * Settings that, together with a seed, fully determine the World that gets generated.
+ * Instances are immutable; use the with* methods to derive a modified copy.
+ *
+ * @param width width of the world in tiles
+ * @param height height of the world in tiles
+ * @param mstMode how candidate corridors between rooms are chosen
+ * @param generatorVersion which version of the generator to use
+ */
+public record WorldConfig(int width, int height, MstMode mstMode, GeneratorVersion generatorVersion) {
+    /**
+     * The configuration used by the game: 80x30 with exhaustive MST candidates and the original
+     * generator.
+     */
+    public static final WorldConfig DEFAULT = new WorldConfig(World.DEFAULT_WIDTH,
+            World.DEFAULT_HEIGHT, MstMode.EXHAUSTIVE, GeneratorVersion.V1);
+
+    public WorldConfig {
+        if (width < World.MIN_WIDTH || height < World.MIN_HEIGHT) {
+            throw new IllegalArgumentException("World must be at least " + World.MIN_WIDTH + "x"
+                    + World.MIN_HEIGHT + ", got " + width + "x" + height);
+        }
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("World is too large: " + width + "x" + height);
+        }
+        if (mstMode == null) {
+            throw new IllegalArgumentException("MST mode cannot be null.");
+        }
+        if (generatorVersion == null) {
+            throw new IllegalArgumentException("Generator version cannot be null.");
+        }
+    }
+
+    public WorldConfig withSize(int newWidth, int newHeight) {
+        return new WorldConfig(newWidth, newHeight, mstMode, generatorVersion);
+    }
+
+    public WorldConfig withMstMode(MstMode newMstMode) {
+        return new WorldConfig(width, height, newMstMode, generatorVersion);
+    }
+
+    public WorldConfig withGeneratorVersion(GeneratorVersion newGeneratorVersion) {
+        return new WorldConfig(width, height, mstMode, newGeneratorVersion);
+    }
+}
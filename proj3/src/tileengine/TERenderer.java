@@ -12,11 +12,29 @@ import java.awt.Font;
  * allowing scrolling of the screen or tracking the avatar or something similar.
  */
 public class TERenderer {
-    private static final int TILE_SIZE = 16;
+    static final int TILE_SIZE = 16;
     private int width;
     private int height;
     private int xOffset;
     private int yOffset;
+    // 上一次画到画布上的tile（按窗口中的位置），用于只重画发生变化的格子；null表示该格子需要重画
+    // 数组和TileSource两种绘制方式各有一份，一种方式画过之后另一种方式的记录就不再可信，会被丢弃
+    private TETile[][] lastFrame;
+    private TETile[][] lastView;
+    // lastView画出时镜头的位置；镜头移动后窗口中每个位置显示的都是世界的另一部分，需要全部比较
+    private int viewCameraX;
+    private int viewCameraY;
+    private boolean viewMoved;
+    // 自上一次画lastView以来可能变化的格子（窗口中的位置x * 窗口高度 + y），镜头不动时只看这些格子
+    private int[] dirtyCells;
+    private boolean[] dirty;
+    private int dirtyCount;
+    // 镜头：窗口左下角显示的世界坐标，以及镜头所在世界的大小；bounded为false时世界没有边界
+    private int cameraX;
+    private int cameraY;
+    private boolean bounded;
+    private int worldWidth;
+    private int worldHeight;
 
     /**
      * Same functionality as the other initialization method. The only difference is that the xOff
@@ -41,6 +59,11 @@ public class TERenderer {
 
         StdDraw.enableDoubleBuffering();
         StdDraw.show();
+
+        // 画布已经清空，之前画过的内容都不在了，下一帧要重画所有格子
+        lastFrame = null;
+        lastView = null;
+        viewMoved = false;
     }
 
     /**
@@ -86,6 +109,262 @@ public class TERenderer {
         StdDraw.clear(new Color(0, 0, 0));
         drawTiles(world);
         StdDraw.show();
+        lastFrame = TETile.copyOf(world);
+        lastView = null;
+    }
+
+    /**
+     * Draws only the tiles that differ from what this renderer last drew, without clearing the
+     * canvas or showing it. StdDraw keeps the previous frame in its offscreen buffer, so the
+     * unchanged tiles are still there. The first call (or a call with a world of a different
+     * size) draws everything.
+     *
+     * An array says nothing about which tiles changed, so every tile is compared; callers that
+     * know what changed should use drawChangedTiles(TileSource) with markChanged instead.
+     * Tiles are compared by reference, which works because worlds are built from the shared
+     * Tileset constants. Call show yourself if this returns true; if it returns false the
+     * frame can be skipped entirely. What drawChangedTiles(TileSource) drew in between is
+     * taken into account, so the two can be mixed.
+     * @param world the 2D TETile[][] array to render
+     * @return true if any tile was drawn
+     * @throws IllegalArgumentException if a tile is null
+     */
+    public boolean drawChangedTiles(TETile[][] world) {
+        int numXTiles = world.length;
+        int numYTiles = world[0].length;
+        if (lastFrame == null || lastFrame.length != numXTiles || lastFrame[0].length != numYTiles) {
+            StdDraw.clear(new Color(0, 0, 0));
+            lastFrame = new TETile[numXTiles][numYTiles];
+        }
+        lastView = null;
+        boolean drawn = false;
+        for (int x = 0; x < numXTiles; x += 1) {
+            for (int y = 0; y < numYTiles; y += 1) {
+                TETile tile = requireTile(world[x][y], x, y);
+                if (tile == lastFrame[x][y]) {
+                    continue;
+                }
+                tile.draw(x + xOffset, y + yOffset);
+                lastFrame[x][y] = tile;
+                drawn = true;
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Forces the tiles in the given region to be redrawn by the next call to drawChangedTiles,
+     * e.g. after drawing an overlay such as a HUD on top of them. Coordinates are in tiles
+     * relative to where drawing starts (xOffset and yOffset), which are world tiles unless a
+     * camera is used; parts of the region outside the last drawn frame are ignored.
+     * @param x left edge of the region
+     * @param y bottom edge of the region
+     * @param w width of the region
+     * @param h height of the region
+     */
+    public void invalidate(int x, int y, int w, int h) {
+        invalidate(lastFrame, x, y, w, h);
+        invalidate(lastView, x, y, w, h);
+        if (lastView != null) {
+            for (int i = Math.max(0, x); i < Math.min(lastView.length, x + w); i += 1) {
+                for (int j = Math.max(0, y); j < Math.min(lastView[i].length, y + h); j += 1) {
+                    markDirty(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells the renderer that the tile at the given world coordinates may have changed, e.g.
+     * because the avatar left or entered it. While the camera stays put,
+     * drawChangedTiles(TileSource) only looks at the tiles passed here or to invalidate, so
+     * every change to the world that should show up on screen must be reported. Tiles outside
+     * the window are ignored.
+     * @param worldX the x coordinate of the tile, in world tiles
+     * @param worldY the y coordinate of the tile, in world tiles
+     */
+    public void markChanged(int worldX, int worldY) {
+        if (lastView == null) {
+            return;  // 下一帧会画出整个窗口
+        }
+        int x = worldX - viewCameraX;
+        int y = worldY - viewCameraY;
+        if (x >= 0 && x < lastView.length && y >= 0 && y < lastView[x].length) {
+            markDirty(x, y);
+        }
+    }
+
+    private void markDirty(int x, int y) {
+        int cell = x * lastView[0].length + y;
+        if (!dirty[cell]) {
+            dirty[cell] = true;
+            dirtyCells[dirtyCount++] = cell;
+        }
+    }
+
+    private static void invalidate(TETile[][] frame, int x, int y, int w, int h) {
+        if (frame == null) {
+            return;
+        }
+        for (int i = Math.max(0, x); i < Math.min(frame.length, x + w); i += 1) {
+            for (int j = Math.max(0, y); j < Math.min(frame[i].length, y + h); j += 1) {
+                frame[i][j] = null;
+            }
+        }
+    }
+
+    /**
+     * Points the camera at (centerX, centerY), e.g. the avatar, for drawing a world that may be
+     * larger than the window with drawChangedTiles(TileSource). The camera is clamped so that
+     * it never shows anything beyond the edges of the world; if the world is smaller than the
+     * window, it is drawn from the bottom-left corner as renderFrame would.
+     * @param centerX the x coordinate, in world tiles, to keep in the middle of the window
+     * @param centerY the y coordinate, in world tiles, to keep in the middle of the window
+     * @param worldWidth width of the world in tiles
+     * @param worldHeight height of the world in tiles
+     */
+    public void setCamera(int centerX, int centerY, int worldWidth, int worldHeight) {
+        int newX = clamp(centerX - viewWidth() / 2, worldWidth - viewWidth());
+        int newY = clamp(centerY - viewHeight() / 2, worldHeight - viewHeight());
+        moveCamera(newX, newY, true, worldWidth, worldHeight);
+    }
+
+    /**
+     * Points the camera at (centerX, centerY) in a world without edges, such as a
+     * ChunkedWorld. Unlike setCamera, the camera always keeps the point exactly centered.
+     * @param centerX the x coordinate, in world tiles, to put in the middle of the window
+     * @param centerY the y coordinate, in world tiles, to put in the middle of the window
+     */
+    public void centerCamera(int centerX, int centerY) {
+        moveCamera(centerX - viewWidth() / 2, centerY - viewHeight() / 2, false, 0, 0);
+    }
+
+    // 镜头的位置或者世界的边界变了之后，下一帧要比较整个窗口
+    private void moveCamera(int newX, int newY, boolean newBounded, int newWidth, int newHeight) {
+        if (newX != cameraX || newY != cameraY || newBounded != bounded
+                || newWidth != worldWidth || newHeight != worldHeight) {
+            viewMoved = true;
+        }
+        cameraX = newX;
+        cameraY = newY;
+        bounded = newBounded;
+        worldWidth = newWidth;
+        worldHeight = newHeight;
+    }
+
+    /** @return the world x coordinate shown in the leftmost column of the window */
+    public int getCameraX() {
+        return cameraX;
+    }
+
+    /** @return the world y coordinate shown in the bottom row of the window */
+    public int getCameraY() {
+        return cameraY;
+    }
+
+    /**
+     * Draws the part of the world the camera is looking at, skipping tiles that are the same as
+     * what was last drawn at that spot in the window, without showing it. Only the tiles inside
+     * the window are asked for, so the cost of a frame depends on the window size and not on
+     * the size of the world. Places outside the world are drawn as Tileset.NOTHING.
+     *
+     * When the camera moves, every spot in the window shows a different part of the world, so
+     * every tile in the window is compared and everything that differs gets redrawn. While it
+     * stays put, only the tiles reported with markChanged or invalidate since the last frame
+     * are looked at, so such a frame costs time proportional to what changed. What
+     * drawChangedTiles(TETile[][]) or renderFrame drew in between is taken into account, so
+     * the two can be mixed.
+     * @param source the world to draw
+     * @return true if any tile was drawn
+     * @throws IllegalArgumentException if the source returns a null tile
+     */
+    public boolean drawChangedTiles(TileSource source) {
+        int numXTiles = viewWidth();
+        int numYTiles = viewHeight();
+        boolean full = viewMoved;
+        if (lastView == null || lastView.length != numXTiles || lastView[0].length != numYTiles) {
+            StdDraw.clear(new Color(0, 0, 0));
+            lastView = new TETile[numXTiles][numYTiles];
+            dirty = new boolean[numXTiles * numYTiles];
+            dirtyCells = new int[numXTiles * numYTiles];
+            dirtyCount = 0;
+            full = true;
+        }
+        lastFrame = null;
+        boolean drawn = false;
+        if (full) {
+            for (int x = 0; x < numXTiles; x += 1) {
+                for (int y = 0; y < numYTiles; y += 1) {
+                    drawn |= drawViewTile(source, x, y);
+                }
+            }
+        } else {
+            for (int i = 0; i < dirtyCount; i += 1) {
+                int cell = dirtyCells[i];
+                drawn |= drawViewTile(source, cell / numYTiles, cell % numYTiles);
+            }
+        }
+        for (int i = 0; i < dirtyCount; i += 1) {
+            dirty[dirtyCells[i]] = false;
+        }
+        dirtyCount = 0;
+        viewCameraX = cameraX;
+        viewCameraY = cameraY;
+        viewMoved = false;
+        return drawn;
+    }
+
+    // 画出窗口中(x, y)处的tile，与上次画在那里的tile相同时跳过
+    private boolean drawViewTile(TileSource source, int x, int y) {
+        int worldX = cameraX + x;
+        int worldY = cameraY + y;
+        boolean outside = bounded && (worldX < 0 || worldX >= worldWidth
+                || worldY < 0 || worldY >= worldHeight);
+        TETile tile = outside ? Tileset.NOTHING : requireTile(source.getTile(worldX, worldY), worldX, worldY);
+        if (tile == lastView[x][y]) {
+            return false;
+        }
+        tile.draw(x + xOffset, y + yOffset);
+        lastView[x][y] = tile;
+        return true;
+    }
+
+    // 所有绘制方法对null的tile都抛出同样的异常，而不是在某些情况下悄悄跳过
+    private static TETile requireTile(TETile tile, int x, int y) {
+        if (tile == null) {
+            throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
+                    + " is null.");
+        }
+        return tile;
+    }
+
+    /**
+     * Renders the window-sized part of a world without edges centered on (centerX, centerY),
+     * e.g. the avatar, and shows it. Like drawChangedTiles(TileSource), only the tiles that
+     * differ from the last rendered viewport are drawn, and if the camera did not move only the
+     * tiles reported with markChanged or invalidate are looked at.
+     * @param source the world to render
+     * @param centerX the x coordinate, in world tiles, to put in the middle of the window
+     * @param centerY the y coordinate, in world tiles, to put in the middle of the window
+     */
+    public void renderViewport(TileSource source, int centerX, int centerY) {
+        centerCamera(centerX, centerY);
+        drawChangedTiles(source);
+        StdDraw.show();
+    }
+
+    // 窗口中用来画tile的区域的大小
+    private int viewWidth() {
+        return width - xOffset;
+    }
+
+    private int viewHeight() {
+        return height - yOffset;
+    }
+
+    // 把镜头的左下角限制在[0, max]内；世界比窗口小时max为负数，镜头停在0
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
     }
 
     /**
@@ -97,11 +376,7 @@ public class TERenderer {
         int numYTiles = world[0].length;
         for (int x = 0; x < numXTiles; x += 1) {
             for (int y = 0; y < numYTiles; y += 1) {
-                if (world[x][y] == null) {
-                    throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
-                            + " is null.");
-                }
-                world[x][y].draw(x + xOffset, y + yOffset);
+                requireTile(world[x][y], x, y).draw(x + xOffset, y + yOffset);
             }
         }
     }
@@ -111,7 +386,11 @@ public class TERenderer {
      * if you changed the pen settings.
      */
     public void resetFont() {
-        Font font = new Font("Monaco", Font.BOLD, TILE_SIZE - 2);
-        StdDraw.setFont(font);
+        StdDraw.setFont(tileFont());
+    }
+
+    /** The font tiles are drawn with, both as text and when pre-rasterized by TileAtlas. */
+    static Font tileFont() {
+        return new Font("Monaco", Font.BOLD, TILE_SIZE - 2);
     }
 }
@@ -28,6 +28,7 @@ public class TETile {
     private final String description;
     private final String filepath;
     private final int id;
+    private final String glyph; // character转成的字符串，避免每次绘制都重新创建
 
     /**
      * Full constructor for TETile objects.
@@ -45,6 +46,7 @@ public class TETile {
         this.description = description;
         this.filepath = filepath;
         this.id = id;
+        this.glyph = Character.toString(character);
     }
 
     /**
@@ -62,6 +64,7 @@ public class TETile {
         this.description = description;
         this.filepath = null;
         this.id = id;
+        this.glyph = Character.toString(character);
     }
 
     /**
@@ -90,24 +93,39 @@ public class TETile {
      *
      * Note that the image provided must be of the right size (16x16). It will not be
      * automatically resized or truncated.
+     *
+     * Tiles without an image are rasterized once per distinct character and colors by
+     * TileAtlas and blitted from then on; if that is unavailable they are drawn as text.
      * @param x x coordinate
      * @param y y coordinate
      */
     public void draw(double x, double y) {
-        if (filepath != null) {
+        if (filepath != null && !TileAtlas.isMissing(filepath)) {
             try {
                 StdDraw.picture(x + 0.5, y + 0.5, filepath);
                 return;
             } catch (IllegalArgumentException e) {
                 // Exception happens because the file can't be found. In this case, fail silently
-                // and just use the character and background color for the tile.
+                // and just use the character and background color for the tile. Remember it so
+                // the next draw doesn't try again.
+                TileAtlas.markMissing(filepath);
+            }
+        }
+
+        String image = TileAtlas.imageFor(character, textColor, backgroundColor);
+        if (image != null) {
+            try {
+                StdDraw.picture(x + 0.5, y + 0.5, image);
+                return;
+            } catch (IllegalArgumentException e) {
+                TileAtlas.disable();  // 缓存的图片无法加载，之后都退回到文字绘制
             }
         }
 
         StdDraw.setPenColor(backgroundColor);
         StdDraw.filledSquare(x + 0.5, y + 0.5, 0.5);
         StdDraw.setPenColor(textColor);
-        StdDraw.text(x + 0.5, y + 0.5, Character.toString(character()));
+        StdDraw.text(x + 0.5, y + 0.5, glyph);
     }
 
     /** Character representation of the tile. Used for drawing in text mode.
@@ -222,4 +240,13 @@ public class TETile {
         }
         return (o instanceof TETile otherTile && otherTile.id == this.id);
     }
+
+    /**
+     * Returns a hash code consistent with equals, i.e. based only on the tile's ID.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
 }
@@ -0,0 +1,107 @@
+package tileengine;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of pre-rasterized tile images used by TETile.draw. Each distinct combination of
+ * character and colors is drawn once into a TILE_SIZE x TILE_SIZE BufferedImage, so drawing
+ * it again is a single image blit instead of a filled square, a pen change and a font layout.
+ *
+ * StdDraw can only blit images it loads by name, so each image is written once to a PNG in a
+ * temporary directory; the AWT toolkit caches loaded images by name, so later draws reuse the
+ * decoded image. If anything about this fails (no writable temp directory, headless
+ * environment, ...) the atlas disables itself and tiles are drawn as text as before.
+ */
+final class TileAtlas {
+    private record Key(char character, Color textColor, Color backgroundColor) { }
+
+    private static final Map<Key, String> IMAGES = new HashMap<>();
+    // 找不到的图片文件，避免每次绘制都重新尝试加载并抛出异常
+    private static final Set<String> MISSING_FILES = new HashSet<>();
+    private static Path directory;
+    private static boolean disabled;
+
+    private TileAtlas() {
+    }
+
+    /**
+     * Returns the path of the pre-rasterized image for the given glyph, rasterizing it on
+     * first use.
+     * @return the image path, or null if the atlas is unavailable and the caller should draw
+     *         the tile as text
+     */
+    static String imageFor(char character, Color textColor, Color backgroundColor) {
+        if (disabled) {
+            return null;
+        }
+        Key key = new Key(character, textColor, backgroundColor);
+        String path = IMAGES.get(key);
+        if (path == null) {
+            try {
+                path = rasterize(key, IMAGES.size());
+            } catch (IOException | RuntimeException | Error e) {
+                disable();
+                return null;
+            }
+            IMAGES.put(key, path);
+        }
+        return path;
+    }
+
+    /** Stops using the atlas; called when blitting a cached image fails. */
+    static void disable() {
+        disabled = true;
+        IMAGES.clear();
+    }
+
+    static boolean isMissing(String filepath) {
+        return MISSING_FILES.contains(filepath);
+    }
+
+    static void markMissing(String filepath) {
+        MISSING_FILES.add(filepath);
+    }
+
+    private static String rasterize(Key key, int n) throws IOException {
+        int size = TERenderer.TILE_SIZE;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(key.backgroundColor());
+            g.fillRect(0, 0, size, size);
+            g.setColor(key.textColor());
+            g.setFont(TERenderer.tileFont());
+            // 与StdDraw.text的定位方式相同：水平居中，基线在中心往下descent处
+            FontMetrics metrics = g.getFontMetrics();
+            String glyph = String.valueOf(key.character());
+            g.drawString(glyph, size / 2.0f - metrics.stringWidth(glyph) / 2.0f,
+                    size / 2.0f + metrics.getDescent());
+        } finally {
+            g.dispose();
+        }
+
+        if (directory == null) {
+            directory = Files.createTempDirectory("byow-tiles");
+            directory.toFile().deleteOnExit();
+        }
+        File file = directory.resolve("tile" + n + ".png").toFile();
+        file.deleteOnExit();
+        ImageIO.write(image, "png", file);
+        return file.getAbsolutePath();
+    }
+}
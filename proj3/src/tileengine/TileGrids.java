@@ -0,0 +1,185 @@
+package tileengine;
+
+/**
+ * Fast comparison of worlds by content. Tiles are compared and hashed by id only, the same way
+ * TETile.equals compares them, so neither method allocates anything, unlike comparing the
+ * strings from TETile.toString.
+ *
+ * Hashes are XXH64 (seed 0) over the tile ids as little-endian 32-bit integers, column by
+ * column, so a hash computed with a Hasher one tile at a time is the same as the hash of the
+ * whole grid.
+ */
+public class TileGrids {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private TileGrids() {
+    }
+
+    /**
+     * Checks if two grids have the same size and the same tile, by id, at every position.
+     * Stops at the first difference.
+     * @param a the first grid
+     * @param b the second grid
+     * @return true if the grids are equal
+     */
+    public static boolean equals(TETile[][] a, TETile[][] b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.length != b.length) {
+            return false;
+        }
+        for (int x = 0; x < a.length; x += 1) {
+            TETile[] columnA = a[x];
+            TETile[] columnB = b[x];
+            if (columnA.length != columnB.length) {
+                return false;
+            }
+            for (int y = 0; y < columnA.length; y += 1) {
+                // 世界都由Tileset中共享的tile组成，大多数格子用引用比较就能判断
+                TETile tileA = columnA[y];
+                TETile tileB = columnB[y];
+                if (tileA != tileB && (tileA == null || tileB == null || tileA.id() != tileB.id())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the tile ids of a grid, column by column.
+     * @param world the grid to hash
+     * @return the hash
+     * @throws IllegalArgumentException if a tile is null
+     */
+    public static long hash(TETile[][] world) {
+        Hasher hasher = new Hasher();
+        for (int x = 0; x < world.length; x += 1) {
+            for (int y = 0; y < world[x].length; y += 1) {
+                if (world[x][y] == null) {
+                    throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
+                            + " is null.");
+                }
+                hasher.add(world[x][y].id());
+            }
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Hashes the tile ids of a region of a world, column by column, without materializing it
+     * as a TETile[][] array. Hashing a whole World this way gives the same result as hashing
+     * its getWorld() array.
+     * @param source the world to hash
+     * @param x left edge of the region
+     * @param y bottom edge of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return the hash
+     */
+    public static long hash(TileSource source, int x, int y, int width, int height) {
+        Hasher hasher = new Hasher();
+        for (int i = x; i < x + width; i += 1) {
+            for (int j = y; j < y + height; j += 1) {
+                hasher.add(source.getTile(i, j).id());
+            }
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Computes the hash one tile id at a time, e.g. while tiles are being produced, without
+     * keeping them around.
+     */
+    public static class Hasher {
+        private long v1 = PRIME1 + PRIME2;
+        private long v2 = PRIME2;
+        private long v3 = 0;
+        private long v4 = -PRIME1;
+        // 还没有凑满32字节（8个id）的输入
+        private final int[] pending = new int[8];
+        private int pendingCount;
+        private long length;
+
+        /**
+         * Adds a tile to the hash.
+         * @param tile the tile to add
+         * @return this hasher
+         */
+        public Hasher add(TETile tile) {
+            return add(tile.id());
+        }
+
+        /**
+         * Adds a tile id to the hash.
+         * @param id the id to add
+         * @return this hasher
+         */
+        public Hasher add(int id) {
+            pending[pendingCount++] = id;
+            length += Integer.BYTES;
+            if (pendingCount == pending.length) {
+                v1 = round(v1, lane(0));
+                v2 = round(v2, lane(2));
+                v3 = round(v3, lane(4));
+                v4 = round(v4, lane(6));
+                pendingCount = 0;
+            }
+            return this;
+        }
+
+        /**
+         * Returns the hash of everything added so far; more ids can still be added afterwards.
+         * @return the hash
+         */
+        public long hash() {
+            long h;
+            if (length >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = PRIME5;
+            }
+            h += length;
+
+            int i = 0;
+            for (; i + 1 < pendingCount; i += 2) {
+                h ^= round(0, lane(i));
+                h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            }
+            if (i < pendingCount) {
+                h ^= (pending[i] & 0xFFFFFFFFL) * PRIME1;
+                h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            }
+
+            h ^= h >>> 33;
+            h *= PRIME2;
+            h ^= h >>> 29;
+            h *= PRIME3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        // 两个小端序的id组成一个8字节的输入
+        private long lane(int i) {
+            return (pending[i] & 0xFFFFFFFFL) | ((long) pending[i + 1] << 32);
+        }
+
+        private static long round(long acc, long input) {
+            return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+        }
+
+        private static long merge(long h, long v) {
+            return (h ^ round(0, v)) * PRIME1 + PRIME4;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package tileengine;
+
+/**
+ * A world that can be asked for one tile at a time, so the renderer can draw just the part of
+ * it that is on screen instead of needing the whole world as a TETile[][] array. Useful for
+ * worlds that are too large to materialize, or that have no edges at all.
+ */
+public interface TileSource {
+    /**
+     * Returns the tile at the given world coordinates.
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @return the tile at (x, y); never null
+     */
+    TETile getTile(int x, int y);
+}
@@ -34,6 +34,40 @@ public class Tileset {
     public static final TETile TREE = new TETile('♠', Color.green, Color.black, "tree", 11);
 
     public static final TETile CELL = new TETile('█', Color.white, Color.black, "cell", 12);
+
+    // 按id索引的tile表，下标即为TETile.id()，用于紧凑的tile id网格与TETile之间的转换
+    private static final TETile[] BY_ID = {
+            AVATAR, WALL, FLOOR, NOTHING, GRASS, WATER, FLOWER,
+            LOCKED_DOOR, UNLOCKED_DOOR, SAND, MOUNTAIN, TREE, CELL
+    };
+
+    /**
+     * Returns the tile constant with the given id.
+     * @param id the id of the tile, as returned by TETile.id()
+     * @return the tile with that id
+     * @throws IllegalArgumentException if no tile in this set has the given id
+     */
+    public static TETile fromId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown tile id: " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /**
+     * Returns the tile constant drawn with the given character. Where several tiles share a
+     * character, the one with the lowest id is returned.
+     * @param character the character of the tile, as returned by TETile.character()
+     * @return the matching tile, or null if no tile in this set uses that character
+     */
+    public static TETile fromCharacter(char character) {
+        for (TETile tile : BY_ID) {
+            if (tile.character() == character) {
+                return tile;
+            }
+        }
+        return null;
+    }
 }
 
 
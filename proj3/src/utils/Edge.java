@@ -1,12 +0,0 @@
-package utils;
-
-public class Edge {
-    public int room1, room2, distance;
-
-    public Edge(int room1, int room2, int distance) {
-        this.room1 = room1;
-        this.room2 = room2;
-        this.distance = distance;
-    }
-}
-
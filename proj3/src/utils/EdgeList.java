@@ -0,0 +1,184 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of weighted edges between rooms, stored without a per-edge object. Each edge
+ * is packed into a single long as distance | room1 | room2 (21 bits each), so ordering the
+ * packed values by their top bits orders the edges by distance.
+ */
+public class EdgeList {
+    private static final int BITS = 21;
+    private static final long MASK = (1L << BITS) - 1;
+    /** Largest room id or distance that fits in an edge. */
+    public static final int MAX_VALUE = (int) MASK;
+
+    private long[] edges;
+    private int size;
+    // sortInPriorityQueueOrder之后堆中还剩下的边数，-1表示不是按出队顺序读取
+    private int heapSize = -1;
+
+    public EdgeList() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty list with room for the given number of edges before it has to grow.
+     * @param capacity initial capacity
+     */
+    public EdgeList(int capacity) {
+        edges = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends an edge.
+     * @param room1 id of the first room
+     * @param room2 id of the second room
+     * @param distance weight of the edge
+     * @throws IllegalArgumentException if any value is negative or greater than MAX_VALUE
+     */
+    public void add(int room1, int room2, int distance) {
+        if ((room1 | room2 | distance) < 0 || room1 > MAX_VALUE || room2 > MAX_VALUE
+                || distance > MAX_VALUE) {
+            throw new IllegalArgumentException("edge out of range: " + room1 + ", " + room2
+                    + ", " + distance);
+        }
+        if (heapSize >= 0) {
+            throw new IllegalStateException("cannot add edges after sortInPriorityQueueOrder");
+        }
+        if (size == edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[size++] = ((long) distance << (2 * BITS)) | ((long) room1 << BITS) | room2;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int room1(int i) {
+        return (int) ((edges[slot(i)] >>> BITS) & MASK);
+    }
+
+    public int room2(int i) {
+        return (int) (edges[slot(i)] & MASK);
+    }
+
+    public int distance(int i) {
+        return distanceOf(edges[slot(i)]);
+    }
+
+    /**
+     * Sorts the edges by distance with a counting sort, keeping edges of equal distance in the
+     * order they were added. Runs in O(size + maximum distance); Manhattan distances between
+     * rooms are bounded by width + height of the world.
+     */
+    public void sortByDistance() {
+        drainHeap();
+        int maxDistance = 0;
+        for (int i = 0; i < size; i++) {
+            maxDistance = Math.max(maxDistance, distanceOf(edges[i]));
+        }
+        int[] start = new int[maxDistance + 2];
+        for (int i = 0; i < size; i++) {
+            start[distanceOf(edges[i]) + 1]++;
+        }
+        for (int d = 0; d <= maxDistance; d++) {
+            start[d + 1] += start[d];
+        }
+        long[] sorted = new long[edges.length];
+        for (int i = 0; i < size; i++) {
+            sorted[start[distanceOf(edges[i])]++] = edges[i];
+        }
+        edges = sorted;
+    }
+
+    /**
+     * Sorts the edges by distance, ordering edges of equal distance exactly as a
+     * java.util.PriorityQueue compared only on distance would poll them after they were added
+     * in list order. The exhaustive MST used that queue and picks a different tree when ties
+     * are broken differently, so this keeps existing seeds generating the same worlds.
+     *
+     * This is an in-place heap sort using the queue's sift rules, done lazily: the heap is built
+     * here the same way the queue builds it, and edges are only extracted from it as they are read, so a caller that
+     * stops early (like Kruskal once every room is connected) never pays for the full sort.
+     * Edges must not be added after calling this method.
+     */
+    public void sortInPriorityQueueOrder() {
+        drainHeap();
+        // 按加入顺序逐个上浮，得到与PriorityQueue相同的堆
+        for (int k = 1; k < size; k++) {
+            siftUp(k, edges[k]);
+        }
+        heapSize = size;
+    }
+
+    // 第i条边在数组中的位置。按出队顺序读取时，取出的堆顶依次放在堆尾空出的位置，
+    // 即第i个出队的边位于size - 1 - i，还没取出的部分按需出队
+    private int slot(int i) {
+        if (heapSize < 0) {
+            return i;
+        }
+        while (size - heapSize <= i) {
+            int n = --heapSize;
+            long min = edges[0];
+            siftDown(0, edges[n], n);
+            edges[n] = min;
+        }
+        return size - 1 - i;
+    }
+
+    // 把剩余的边全部出队并恢复成从小到大的顺序存储
+    private void drainHeap() {
+        if (heapSize < 0) {
+            return;
+        }
+        slot(size - 1);
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            long tmp = edges[i];
+            edges[i] = edges[j];
+            edges[j] = tmp;
+        }
+        heapSize = -1;
+    }
+
+    // 以下两个方法与PriorityQueue.siftUpUsingComparator/siftDownUsingComparator的规则一致
+    private void siftUp(int k, long x) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            long e = edges[parent];
+            if (compareDistance(x, e) >= 0) {
+                break;
+            }
+            edges[k] = e;
+            k = parent;
+        }
+        edges[k] = x;
+    }
+
+    private void siftDown(int k, long x, int n) {
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            long c = edges[child];
+            int right = child + 1;
+            if (right < n && compareDistance(c, edges[right]) > 0) {
+                c = edges[child = right];
+            }
+            if (compareDistance(x, c) <= 0) {
+                break;
+            }
+            edges[k] = c;
+            k = child;
+        }
+        edges[k] = x;
+    }
+
+    private static int compareDistance(long a, long b) {
+        return Integer.compare(distanceOf(a), distanceOf(b));
+    }
+
+    private static int distanceOf(long edge) {
+        return (int) (edge >>> (2 * BITS));
+    }
+}
@@ -2,12 +2,28 @@ package utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A library of simple file operations. Feel free to modify this file.
  */
 public class FileUtils {
+    /**
+     * Writes data to a channel. Used to stream file contents without building them in memory
+     * first.
+     */
+    @FunctionalInterface
+    public interface ChannelWriter {
+        void writeTo(WritableByteChannel channel) throws IOException;
+    }
+
     /**
      * Writes the specified contents to a file with the given filename.
      *
@@ -23,6 +39,83 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Streams contents into a file with the given filename so that the file is replaced
+     * atomically: readers (and the game after a crash) see either the complete old contents or
+     * the complete new contents, never a half-written file. The contents are written to a
+     * temporary file in the same directory, flushed to disk, and then renamed over the target.
+     *
+     * @param filename The name of the file to write to.
+     * @param writer   Writes the contents to the channel.
+     * @throws RuntimeException if an IOException occurs during the write operation.
+     */
+    public static void writeFileAtomically(String filename, ChannelWriter writer) {
+        Path target = new File(filename).getAbsoluteFile().toPath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writer.writeTo(channel);
+                channel.force(true);  // 重命名之前确保内容已经写到磁盘上
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the contents of a file with the given filename as bytes. The file is closed before
+     * this returns, so it can be replaced or deleted right away (which a live memory mapping
+     * would prevent on some platforms).
+     *
+     * @param filename The name of the file to read from.
+     * @return The contents of the file.
+     * @throws RuntimeException if an IOException occurs during the read operation.
+     */
+    public static byte[] readFileBytes(String filename) {
+        try {
+            return Files.readAllBytes(new File(filename).toPath());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads the last bytes of a file with the given filename without reading the rest of it.
+     *
+     * @param filename The name of the file to read from.
+     * @param length   How many bytes to read from the end of the file.
+     * @return A buffer holding the last length bytes of the file, or the whole file if it is
+     *         shorter than that.
+     * @throws RuntimeException if an IOException occurs during the read operation.
+     */
+    public static ByteBuffer readFileEnd(String filename, int length) {
+        try (FileChannel channel = FileChannel.open(new File(filename).toPath(),
+                StandardOpenOption.READ)) {
+            long start = Math.max(0, channel.size() - length);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;  // 文件在读取期间变短了
+                }
+            }
+            return buffer.flip();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Reads the contents of a file with the given filename.
      *
@@ -38,6 +131,20 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Deletes the file with the given filename, if it exists.
+     *
+     * @param filename The name of the file to delete.
+     * @throws RuntimeException if an IOException occurs while deleting the file.
+     */
+    public static void deleteFile(String filename) {
+        try {
+            Files.deleteIfExists(new File(filename).toPath());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Checks if a file with the given filename exists.
      *
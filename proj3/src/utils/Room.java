@@ -13,6 +13,22 @@ public class Room {
         this.height = height;
     }
 
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     // 左下角位置
     public int[] getPosition() {
         return new int[] {x, y};
@@ -25,7 +41,15 @@ public class Room {
 
     // 中心点
     public int[] getCenter() {
-        return new int[]{x + width / 2, y + height / 2};
+        return new int[]{getCenterX(), getCenterY()};
+    }
+
+    public int getCenterX() {
+        return x + width / 2;
+    }
+
+    public int getCenterY() {
+        return y + height / 2;
     }
 }
 
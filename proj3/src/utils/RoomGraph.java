@@ -0,0 +1,167 @@
+package utils;
+
+import java.util.List;
+
+/**
+ * Builds candidate edge sets between rooms for the minimum spanning tree that connects them.
+ * Distances are Manhattan distances between room centers.
+ */
+public class RoomGraph {
+    private static final int BUCKET_SIZE = 16;
+
+    /**
+     * Returns an edge for every pair of rooms.
+     * @param rooms the rooms to connect
+     * @return n * (n - 1) / 2 edges, ordered by (room1, room2)
+     */
+    public static EdgeList allPairEdges(List<Room> rooms) {
+        int n = rooms.size();
+        EdgeList edges = new EdgeList((int) Math.min(Integer.MAX_VALUE - 8, (long) n * (n - 1) / 2));
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                edges.add(i, j, distance(rooms.get(i), rooms.get(j)));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Returns the edges from each room to its k nearest rooms, without duplicates. The result
+     * has at most n * k edges. It is usually, but not always, connected: rooms that form a
+     * tight cluster far away from the rest may only have neighbours inside the cluster.
+     * @param rooms the rooms to connect
+     * @param k the number of neighbours to keep per room
+     * @return the candidate edges, with room1 < room2 in every edge
+     * @throws IllegalArgumentException if {@code k <= 0}
+     */
+    public static EdgeList nearestNeighborEdges(List<Room> rooms, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        int n = rooms.size();
+        if (n < 2) {
+            return new EdgeList();
+        }
+        k = Math.min(k, n - 1);
+
+        // 按中心点把房间分到均匀网格的桶中，bucketStart[b]..bucketStart[b + 1]为第b个桶中的房间
+        int maxX = 0;
+        int maxY = 0;
+        for (Room room : rooms) {
+            maxX = Math.max(maxX, room.getCenterX());
+            maxY = Math.max(maxY, room.getCenterY());
+        }
+        int columns = maxX / BUCKET_SIZE + 1;
+        int rows = maxY / BUCKET_SIZE + 1;
+        int[] bucketStart = new int[columns * rows + 1];
+        for (Room room : rooms) {
+            bucketStart[bucketOf(room, rows) + 1]++;
+        }
+        for (int b = 0; b < columns * rows; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] bucketRooms = new int[n];
+        int[] fill = bucketStart.clone();
+        for (int i = 0; i < n; i++) {
+            bucketRooms[fill[bucketOf(rooms.get(i), rows)]++] = i;
+        }
+
+        // neighbors[i * k .. i * k + k)为房间i最近的k个房间，按距离从小到大排列
+        int[] neighbors = new int[n * k];
+        int[] distances = new int[n * k];
+        for (int i = 0; i < n; i++) {
+            Room room = rooms.get(i);
+            int cx = room.getCenterX() / BUCKET_SIZE;
+            int cy = room.getCenterY() / BUCKET_SIZE;
+            int found = 0;
+            for (int r = 0; ; r++) {
+                // 第r圈桶中的房间与当前房间的距离至少为(r - 1) * BUCKET_SIZE + 1
+                int lowerBound = r == 0 ? 0 : (r - 1) * BUCKET_SIZE + 1;
+                if (found == k && distances[i * k + k - 1] < lowerBound) {
+                    break;
+                }
+                if (cx - r < 0 && cy - r < 0 && cx + r >= columns && cy + r >= rows) {
+                    break;  // 这一圈已经完全在网格外
+                }
+                for (int bx = cx - r; bx <= cx + r; bx++) {
+                    if (bx < 0 || bx >= columns) {
+                        continue;
+                    }
+                    // 圈的左右两列取整列，其余列只取上下两个桶
+                    int step = (bx == cx - r || bx == cx + r) ? 1 : Math.max(1, 2 * r);
+                    for (int by = cy - r; by <= cy + r; by += step) {
+                        if (by < 0 || by >= rows) {
+                            continue;
+                        }
+                        int b = bx * rows + by;
+                        for (int p = bucketStart[b]; p < bucketStart[b + 1]; p++) {
+                            int j = bucketRooms[p];
+                            if (j != i) {
+                                found = insertNeighbor(neighbors, distances, i * k, k, found,
+                                        j, distance(room, rooms.get(j)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // 房间j < i且j的近邻中已包含i时，这条边已经在处理j时加入过了
+        EdgeList edges = new EdgeList(n * k);
+        for (int i = 0; i < n; i++) {
+            for (int p = i * k; p < i * k + k; p++) {
+                int j = neighbors[p];
+                if (j < i && contains(neighbors, j * k, k, i)) {
+                    continue;
+                }
+                edges.add(Math.min(i, j), Math.max(i, j), distances[p]);
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Manhattan distance between the centers of two rooms.
+     * @param room1 the first room
+     * @param room2 the second room
+     * @return the distance between their centers
+     */
+    public static int distance(Room room1, Room room2) {
+        return Math.abs(room1.getCenterX() - room2.getCenterX())
+                + Math.abs(room1.getCenterY() - room2.getCenterY());
+    }
+
+    private static int bucketOf(Room room, int rows) {
+        return room.getCenterX() / BUCKET_SIZE * rows + room.getCenterY() / BUCKET_SIZE;
+    }
+
+    // 把候选房间插入到按(距离, 编号)有序的前k近邻中，返回插入后的近邻数
+    private static int insertNeighbor(int[] neighbors, int[] distances, int offset, int k, int found,
+                                      int room, int distance) {
+        int p = found < k ? found : k - 1;
+        if (found == k && !closer(distance, room, distances[offset + p], neighbors[offset + p])) {
+            return found;
+        }
+        while (p > 0 && closer(distance, room, distances[offset + p - 1], neighbors[offset + p - 1])) {
+            neighbors[offset + p] = neighbors[offset + p - 1];
+            distances[offset + p] = distances[offset + p - 1];
+            p--;
+        }
+        neighbors[offset + p] = room;
+        distances[offset + p] = distance;
+        return Math.min(found + 1, k);
+    }
+
+    private static boolean closer(int distance1, int room1, int distance2, int room2) {
+        return distance1 < distance2 || (distance1 == distance2 && room1 < room2);
+    }
+
+    private static boolean contains(int[] values, int offset, int length, int value) {
+        for (int p = offset; p < offset + length; p++) {
+            if (values[p] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A uniform-grid spatial index over room bounds. The world is divided into square buckets and
+ * every room is registered in each bucket its footprint touches, so a rectangle query only has
+ * to look at the rooms stored near that rectangle instead of every room in the world.
+ */
+public class RoomIndex {
+    private static final int BUCKET_SIZE = 16;
+
+    private final int columns;
+    private final int rows;
+    private final List<List<Room>> buckets;
+    private int size;
+
+    /**
+     * Creates an empty index covering a width x height world.
+     * @param width width of the world in tiles
+     * @param height height of the world in tiles
+     */
+    public RoomIndex(int width, int height) {
+        columns = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        rows = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        buckets = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            buckets.add(null);  // 桶在第一次放入房间时才创建
+        }
+    }
+
+    /**
+     * Adds a room to the index.
+     * @param room the room to add
+     */
+    public void add(Room room) {
+        int fromX = bucketX(room.getX());
+        int toX = bucketX(room.getX() + room.getWidth() - 1);
+        int fromY = bucketY(room.getY());
+        int toY = bucketY(room.getY() + room.getHeight() - 1);
+        for (int bx = fromX; bx <= toX; bx++) {
+            for (int by = fromY; by <= toY; by++) {
+                int i = bx * rows + by;
+                List<Room> bucket = buckets.get(i);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    buckets.set(i, bucket);
+                }
+                bucket.add(room);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Tests the rooms whose footprint intersects the given rectangle, stopping at the first one
+     * accepted by the predicate. A room may be tested more than once if it spans several buckets.
+     * @param x left edge of the rectangle
+     * @param y bottom edge of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param test the predicate to apply to each nearby room
+     * @return true if some nearby room matched the predicate
+     */
+    public boolean anyMatch(int x, int y, int width, int height, Predicate<Room> test) {
+        int fromX = bucketX(x);
+        int toX = bucketX(x + width - 1);
+        int fromY = bucketY(y);
+        int toY = bucketY(y + height - 1);
+        for (int bx = fromX; bx <= toX; bx++) {
+            for (int by = fromY; by <= toY; by++) {
+                List<Room> bucket = buckets.get(bx * rows + by);
+                if (bucket == null) {
+                    continue;
+                }
+                for (Room room : bucket) {
+                    if (test.test(room)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of rooms in the index.
+     * @return the number of rooms added so far
+     */
+    public int size() {
+        return size;
+    }
+
+    // 坐标超出世界范围时夹到边缘的桶，查询矩形可以比世界大
+    private int bucketX(int x) {
+        return Math.max(0, Math.min(columns - 1, x / BUCKET_SIZE));
+    }
+
+    private int bucketY(int y) {
+        return Math.max(0, Math.min(rows - 1, y / BUCKET_SIZE));
+    }
+}
@@ -2,17 +2,36 @@ package utils;
 
 public class UnionFind {
     private int[] parent;
+    private int[] size;   // 以该节点为根的集合大小，只有根节点的值有意义
+    private int n;        // 当前使用的元素个数，可能小于数组长度
     private int count;
 
     public UnionFind(int n) {
         parent = new int[n];
+        size = new int[n];
+        reset(n);
+    }
+
+    // 重置为n个互不相连的元素，数组足够大时直接复用，批量生成世界时避免反复分配
+    // 之后只有0到n-1是合法的元素，数组中多出来的部分不能再被访问
+    public void reset(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of elements cannot be negative: " + n);
+        }
+        if (n > parent.length) {
+            parent = new int[n];
+            size = new int[n];
+        }
         for (int i = 0; i < n; i++) {
             parent[i] = i;
+            size[i] = 1;
         }
+        this.n = n;
         count = n;
     }
 
     public int find(int p) {
+        validate(p);
         while (p != parent[p]) {
             parent[p] = parent[parent[p]];  // 路径压缩
             p = parent[p];
@@ -24,12 +43,39 @@ public class UnionFind {
         int rootP = find(p);
         int rootQ = find(q);
         if (rootP == rootQ) return false;
+        // 按大小合并，把小的集合挂到大的集合下面，保证树高为O(log n)
+        if (size[rootP] > size[rootQ]) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
         parent[rootP] = rootQ;
+        size[rootQ] += size[rootP];
         count--;
         return true;
     }
 
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    // p所在集合的元素个数
+    public int componentSize(int p) {
+        return size[find(p)];
+    }
+
+    public int size() {
+        return n;
+    }
+
     public int getCount() {
         return count;
     }
+
+    // p必须是当前的元素，reset之后数组中残留的下标也会被拒绝
+    private void validate(int p) {
+        if (p < 0 || p >= n) {
+            throw new IllegalArgumentException("Element " + p + " is not between 0 and " + (n - 1));
+        }
+    }
 }
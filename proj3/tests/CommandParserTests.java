@@ -0,0 +1,60 @@
+import core.CommandParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CommandParserTests {
+    // 把解析出的命令记录成字符串，方便比较
+    private static class Recorder implements CommandParser.Handler {
+        private final StringBuilder log = new StringBuilder();
+
+        @Override
+        public void newGame(long seed) {
+            log.append("new ").append(seed).append(';');
+        }
+
+        @Override
+        public void loadGame() {
+            log.append("load;");
+        }
+
+        @Override
+        public void move(char key) {
+            log.append(key);
+        }
+
+        @Override
+        public void quit() {
+            log.append(";quit");
+        }
+    }
+
+    @Test
+    public void parsesNewAndLoadCommandsTest() throws IOException {
+        Recorder recorder = new Recorder();
+        CommandParser parser = new CommandParser(recorder);
+        parser.accept("N9223372036854775807SwaSd:x::Qdd");
+        parser.finish();
+        assertEquals("new 9223372036854775807;waSdx;quit", recorder.log.toString());
+
+        recorder = new Recorder();
+        parser = new CommandParser(recorder);
+        parser.accept(new StringReader("lddw:q"));
+        assertEquals("load;ddw;quit", recorder.log.toString());
+    }
+
+    @Test
+    public void rejectsMalformedInputTest() {
+        assertThrows(IllegalArgumentException.class, () -> new CommandParser(new Recorder()).accept("x"));
+        assertThrows(IllegalArgumentException.class, () -> new CommandParser(new Recorder()).accept("ns"));
+        assertThrows(IllegalArgumentException.class, () -> new CommandParser(new Recorder()).accept("n12a"));
+        assertThrows(IllegalArgumentException.class, () -> new CommandParser(new Recorder()).accept("n9223372036854775808s"));
+        CommandParser unfinished = new CommandParser(new Recorder());
+        unfinished.accept("n123");
+        assertThrows(IllegalArgumentException.class, unfinished::finish);
+    }
+}
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+import utils.EdgeList;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EdgeListTests {
+    @Test
+    public void sortByDistanceIsStableTest() {
+        EdgeList edges = new EdgeList();
+        edges.add(0, 1, 5);
+        edges.add(0, 2, 3);
+        edges.add(1, 2, 5);
+        edges.add(2, 3, 0);
+        edges.sortByDistance();
+
+        assertEquals(0, edges.distance(0));
+        assertEquals(3, edges.distance(1));
+        assertEquals(1, edges.room2(2));  // 距离相同的边保持加入时的顺序
+        assertEquals(1, edges.room1(3));
+    }
+
+    @Test
+    public void priorityQueueOrderMatchesPriorityQueueTest() {
+        Random random = new Random(61);
+        EdgeList edges = new EdgeList();
+        PriorityQueue<int[]> queue = new PriorityQueue<>(Comparator.comparingInt(e -> e[2]));
+        for (int i = 0; i < 2000; i++) {
+            int[] edge = {random.nextInt(100), random.nextInt(100), random.nextInt(40)};
+            edges.add(edge[0], edge[1], edge[2]);
+            queue.add(edge);
+        }
+        edges.sortInPriorityQueueOrder();
+
+        for (int i = 0; i < edges.size(); i++) {
+            int[] expected = queue.poll();
+            assertEquals(expected[0], edges.room1(i));
+            assertEquals(expected[1], edges.room2(i));
+            assertEquals(expected[2], edges.distance(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
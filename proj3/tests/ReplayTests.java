@@ -0,0 +1,67 @@
+import core.AutograderBuddy;
+import core.Replay;
+import core.ReplayHarness;
+import core.SaveStore;
+import org.junit.jupiter.api.Test;
+import tileengine.TileGrids;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayTests {
+    // 生成一段随机的移动脚本
+    private static String script(long seed, int moves) {
+        Random random = new Random(seed);
+        StringBuilder script = new StringBuilder("n").append(seed).append('s');
+        for (int i = 0; i < moves; i++) {
+            script.append("wasd".charAt(random.nextInt(4)));
+        }
+        return script.toString();
+    }
+
+    @Test
+    public void streamingReplayMatchesStringInputTest() throws IOException {
+        String script = script(4242, 300_000);
+        List<Long> checkpoints = new ArrayList<>();
+        Replay.Result result = Replay.replay(
+                Channels.newChannel(new ByteArrayInputStream(script.getBytes(StandardCharsets.US_ASCII))),
+                SaveStore.inMemory(), 100_000, (keystrokes, world) -> checkpoints.add(keystrokes));
+
+        assertEquals(4242L, result.seed());
+        assertEquals(script.length(), result.keystrokes());
+        assertEquals(List.of(100_000L, 200_000L, 300_000L), checkpoints);
+        assertTrue(TileGrids.equals(AutograderBuddy.getWorldFromInput(script), result.world().getWorld()));
+    }
+
+    @Test
+    public void parallelSessionsUseIsolatedSavesTest() {
+        List<String> scripts = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (long seed = 0; seed < 40; seed++) {
+            // 一半的会话先保存再读档，它们的存档互不影响
+            String moves = script(seed, 50).substring(("n" + seed + "s").length());
+            if (seed % 2 == 0) {
+                scripts.add("n" + seed + "s" + moves.substring(0, 25) + ":ql" + moves.substring(25) + ":q");
+            } else {
+                scripts.add("n" + seed + "s" + moves);
+            }
+            expected.add("n" + seed + "s" + moves);
+        }
+
+        long[] hashes;
+        try (ReplayHarness harness = new ReplayHarness(4)) {
+            hashes = harness.replayScripts(scripts);
+        }
+        for (int i = 0; i < scripts.size(); i++) {
+            assertEquals(TileGrids.hash(AutograderBuddy.getWorldFromInput(expected.get(i))), hashes[i]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import utils.Room;
+import utils.RoomIndex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RoomIndexTests {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    @Test
+    public void findsSameRoomsAsLinearScanTest() {
+        Random random = new Random(2024);
+        List<Room> rooms = new ArrayList<>();
+        RoomIndex index = new RoomIndex(WIDTH, HEIGHT);
+        for (int i = 0; i < 300; i++) {
+            Room room = new Room(random.nextInt(WIDTH - 15), random.nextInt(HEIGHT - 12),
+                    3 + random.nextInt(12), 3 + random.nextInt(9));
+            rooms.add(room);
+            index.add(room);
+        }
+        assertEquals(rooms.size(), index.size());
+
+        // 查询矩形可以超出世界范围
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(WIDTH + 40) - 20;
+            int y = random.nextInt(HEIGHT + 40) - 20;
+            int w = 1 + random.nextInt(30);
+            int h = 1 + random.nextInt(30);
+            Set<Room> expected = new HashSet<>();
+            for (Room room : rooms) {
+                if (intersects(room, x, y, w, h)) {
+                    expected.add(room);
+                }
+            }
+            Set<Room> found = new HashSet<>();
+            index.anyMatch(x, y, w, h, room -> {
+                if (intersects(room, x, y, w, h)) {
+                    found.add(room);
+                }
+                return false;
+            });
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void matchesWorldOverlapCheckTest() {
+        // 与World放置房间时的检查相同：重叠判定只用新房间的高度，查询矩形向下扩展一个房间高度
+        Random random = new Random(77);
+        List<Room> rooms = new ArrayList<>();
+        RoomIndex index = new RoomIndex(WIDTH, HEIGHT);
+        for (int i = 0; i < 5000; i++) {
+            Room candidate = new Room(1 + random.nextInt(WIDTH - 16), 1 + random.nextInt(HEIGHT - 13),
+                    3 + random.nextInt(12), 3 + random.nextInt(9));
+            boolean linear = false;
+            for (Room room : rooms) {
+                linear |= overlaps(candidate, room);
+            }
+            int h = candidate.getHeight();
+            boolean indexed = index.anyMatch(candidate.getX(), candidate.getY() - h + 1,
+                    candidate.getWidth(), 2 * h - 1, room -> overlaps(candidate, room));
+            assertEquals(linear, indexed);
+            if (!linear) {
+                rooms.add(candidate);
+                index.add(candidate);
+            }
+        }
+    }
+
+    private static boolean intersects(Room room, int x, int y, int w, int h) {
+        return room.getX() < x + w && x < room.getX() + room.getWidth()
+                && room.getY() < y + h && y < room.getY() + room.getHeight();
+    }
+
+    // World.isOverlapping：两个房间的高度都取自newRoom
+    private static boolean overlaps(Room newRoom, Room existing) {
+        return newRoom.getX() < existing.getX() + existing.getWidth()
+                && newRoom.getX() + newRoom.getWidth() > existing.getX()
+                && newRoom.getY() < existing.getY() + newRoom.getHeight()
+                && newRoom.getY() + newRoom.getHeight() > existing.getY();
+    }
+}
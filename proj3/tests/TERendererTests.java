@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+import tileengine.TERenderer;
+import tileengine.TETile;
+import tileengine.TileSource;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TERendererTests {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 8;
+
+    // 只记录被画了多少次，不真正绘制
+    private static class CountingTile extends TETile {
+        private int draws;
+
+        CountingTile() {
+            super('.', Color.WHITE, Color.BLACK, "counting", 1);
+        }
+
+        @Override
+        public void draw(double x, double y) {
+            draws++;
+        }
+    }
+
+    @Test
+    public void reinitializeRedrawsArrayFrameTest() {
+        CountingTile tile = new CountingTile();
+        TETile[][] world = new TETile[WIDTH][HEIGHT];
+        for (TETile[] column : world) {
+            Arrays.fill(column, tile);
+        }
+        TERenderer ter = new TERenderer();
+        ter.initialize(WIDTH, HEIGHT);
+        assertTrue(ter.drawChangedTiles(world));
+        assertEquals(WIDTH * HEIGHT, tile.draws);
+        assertFalse(ter.drawChangedTiles(world));
+
+        // 重新初始化会清空画布，世界没变也要全部重画
+        ter.initialize(WIDTH, HEIGHT);
+        tile.draws = 0;
+        assertTrue(ter.drawChangedTiles(world));
+        assertEquals(WIDTH * HEIGHT, tile.draws);
+    }
+
+    @Test
+    public void reinitializeRedrawsViewTest() {
+        CountingTile tile = new CountingTile();
+        TileSource world = (x, y) -> tile;
+        TERenderer ter = new TERenderer();
+        ter.initialize(WIDTH, HEIGHT);
+        ter.renderViewport(world, 0, 0);
+        assertEquals(WIDTH * HEIGHT, tile.draws);
+        tile.draws = 0;
+        ter.renderViewport(world, 0, 0);
+        assertEquals(0, tile.draws);
+
+        ter.initialize(WIDTH, HEIGHT);
+        ter.renderViewport(world, 0, 0);
+        assertEquals(WIDTH * HEIGHT, tile.draws);
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+import utils.UnionFind;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UnionFindTests {
+    @Test
+    public void unionBySizeTest() {
+        UnionFind uf = new UnionFind(8);
+        uf.union(0, 1);
+        uf.union(1, 2);
+        // 3所在的集合更小，无论参数顺序如何都挂到0所在的集合下面
+        assertTrue(uf.union(0, 3));
+        assertNotEquals(3, uf.find(3));
+        assertEquals(uf.find(0), uf.find(3));
+        assertEquals(4, uf.componentSize(3));
+        assertFalse(uf.union(3, 2));
+        assertTrue(uf.connected(1, 3));
+        assertFalse(uf.connected(1, 4));
+        assertEquals(5, uf.getCount());
+    }
+
+    @Test
+    public void resetTest() {
+        UnionFind uf = new UnionFind(10);
+        for (int i = 1; i < 10; i++) {
+            uf.union(0, i);
+        }
+        assertEquals(1, uf.getCount());
+
+        uf.reset(4);
+        assertEquals(4, uf.size());
+        assertEquals(4, uf.getCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, uf.find(i));
+            assertEquals(1, uf.componentSize(i));
+        }
+        // 数组仍然有10个位置，但4以后的元素已经不存在了
+        assertThrows(IllegalArgumentException.class, () -> uf.find(4));
+        assertThrows(IllegalArgumentException.class, () -> uf.union(0, 9));
+        assertThrows(IllegalArgumentException.class, () -> uf.connected(-1, 0));
+
+        uf.reset(20);
+        assertEquals(20, uf.getCount());
+        assertTrue(uf.union(0, 19));
+    }
+}
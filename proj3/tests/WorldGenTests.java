@@ -1,10 +1,44 @@
 import core.AutograderBuddy;
+import core.ChunkedWorld;
+import core.GeneratorVersion;
+import core.MoveJournal;
+import core.MstMode;
+import core.SaveGame;
+import core.SaveStore;
+import core.World;
+import core.WorldBatch;
+import core.WorldCache;
+import core.WorldConfig;
 import edu.princeton.cs.algs4.StdDraw;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import tileengine.TERenderer;
 import tileengine.TETile;
+import tileengine.TileGrids;
+import tileengine.Tileset;
+import utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class WorldGenTests {
+    // 测试写出的存档放在每个测试自己的临时目录里，不会留在工作目录中
+    @TempDir
+    Path tempDir;
+
     @Test
     public void basicTest() {
         // put different seeds here to test different worlds
@@ -28,7 +62,290 @@ public class WorldGenTests {
 
     @Test
     public void basicSaveTest() {
-        // TODO: write a test that calls getWorldFromInput twice, with "n123swasd:q" and with "lwasd"
+        // 存到临时目录中，不覆盖工作目录中玩家的存档
+        AutograderBuddy.setSaveStore(SaveStore.inDirectory(tempDir.toFile()));
+        try {
+            AutograderBuddy.getWorldFromInput("n123swasd:q");
+            TETile[][] loaded = AutograderBuddy.getWorldFromInput("lwasd");
+            TETile[][] expected = AutograderBuddy.getWorldFromInput("n123swasdwasd");
+
+            assertTrue(TileGrids.equals(expected, loaded));
+        } finally {
+            AutograderBuddy.setSaveStore(null);
+        }
+    }
+
+    @Test
+    public void legacyTextSaveTest() {
+        World world = new World(new Random(112233));
+        world.moveAvatar('d');
+        world.moveAvatar('w');
+        String legacy = "112233\n" + world.getAvatarX() + " " + world.getAvatarY() + "\n"
+                + TETile.toString(world.getWorld());
+        String save = tempFile("savegame.txt");
+        FileUtils.writeFile(save, legacy);
+
+        SaveGame.Loaded loaded = SaveGame.load(save);
+        assertEquals(112233L, loaded.seed());
+        assertTrue(TileGrids.equals(world.getWorld(), loaded.world().getWorld()));
+        assertEquals(world.getAvatarX(), loaded.world().getAvatarX());
+        assertEquals(world.getAvatarY(), loaded.world().getAvatarY());
+    }
+
+    @Test
+    public void corruptSaveIsRejectedTest() throws IOException {
+        World world = new World(new Random(4242), WorldConfig.DEFAULT.withSize(300, 200));
+        String save = tempFile("savegame.bin");
+        SaveGame.save(save, world, 4242);
+        assertTrue(TileGrids.equals(world.getWorld(), SaveGame.load(save).world().getWorld()));
+
+        // 存档按块读取，损坏的字节在tile数据中间也要被CRC发现
+        Path path = Path.of(save);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        assertThrows(IllegalArgumentException.class, () -> SaveGame.load(save));
+
+        Files.write(path, Arrays.copyOf(bytes, 40));
+        assertThrows(IllegalArgumentException.class, () -> SaveGame.load(save));
+    }
+
+    @Test
+    public void journaledMovesAreReplayedOnLoadTest() {
+        String save = tempFile("savegame.bin");
+        String journalFile = tempFile("savegame.journal");
+        World world = new World(new Random(5150));
+        try (MoveJournal journal = MoveJournal.begin(save, journalFile, world, 5150)) {
+            for (char key : "ddwwaassd".toCharArray()) {
+                if (world.moveAvatar(key)) {
+                    journal.append(key);
+                }
+            }
+        }
+
+        SaveGame.Loaded loaded = SaveGame.load(save);
+        MoveJournal.replay(journalFile, save, loaded.world());
+        assertTrue(TileGrids.equals(world.getWorld(), loaded.world().getWorld()));
+
+        // 存档被替换后，旧的journal不再适用
+        world.moveAvatar('w');
+        SaveGame.save(save, world, 5150);
+        loaded = SaveGame.load(save);
+        assertEquals(0, MoveJournal.replay(journalFile, save, loaded.world()));
+    }
+
+    @Test
+    public void journalSnapshotsBoundReplayLengthTest() {
+        String save = tempFile("savegame.bin");
+        String journalFile = tempFile("savegame.journal");
+        World world = new World(new Random(5150));
+        try (MoveJournal journal = MoveJournal.begin(save, journalFile, world, 5150, 4)) {
+            for (char key : "ddddwwwwaaaassssdwasdwasd".toCharArray()) {
+                if (world.moveAvatar(key)) {
+                    journal.append(key);
+                    assertTrue(journal.movesSinceSnapshot() < 4);
+                }
+            }
+        }
+
+        SaveGame.Loaded loaded = SaveGame.load(save);
+        assertTrue(MoveJournal.replay(journalFile, save, loaded.world()) < 4);
+        assertTrue(TileGrids.equals(world.getWorld(), loaded.world().getWorld()));
+    }
+
+    @Test
+    public void setAvatarPositionValidatesTest() {
+        World world = new World(new Random(2024));
+        assertThrows(IllegalArgumentException.class, () -> world.setAvatarPosition(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> world.setAvatarPosition(0, world.getHeight()));
+        assertThrows(IllegalArgumentException.class, () -> world.setAvatarPosition(0, 0));  // 边界不是地板
+
+        int x = world.getAvatarX();
+        int y = world.getAvatarY();
+        world.moveAvatar('d');
+        world.setAvatarPosition(x, y);
+        TETile[][] tiles = world.getWorld();
+        assertEquals(Tileset.AVATAR, tiles[x][y]);
+        assertEquals(1, TETile.toString(tiles).chars().filter(c -> c == Tileset.AVATAR.character()).count());
+    }
+
+    @Test
+    public void gridHashAndEqualityTest() {
+        World world = new World(new Random(31337));
+        TETile[][] before = world.getWorld();
+        assertTrue(TileGrids.equals(before, TETile.copyOf(before)));
+        assertEquals(TileGrids.hash(before), TileGrids.hash(world, 0, 0, world.getWidth(), world.getHeight()));
+
+        // avatar移动之后内容不同，哈希也不同
+        assertTrue(world.moveAvatar('w') || world.moveAvatar('a') || world.moveAvatar('s') || world.moveAvatar('d'));
+        TETile[][] after = world.getWorld();
+        assertFalse(TileGrids.equals(before, after));
+        assertNotEquals(TileGrids.hash(before), TileGrids.hash(after));
+        assertFalse(TileGrids.equals(before, new World(new Random(31337), WorldConfig.DEFAULT.withSize(81, 30)).getWorld()));
+    }
+
+    @Test
+    public void worldCacheReturnsIndependentViewsTest() {
+        // 每个快照是网格加上房间的位置和大小，预算放得下两个世界，放不下三个
+        long gridBytes = (long) World.DEFAULT_WIDTH * World.DEFAULT_HEIGHT;
+        WorldCache cache = new WorldCache(3 * gridBytes - 1);
+        World first = cache.get(777);
+        World second = cache.get(777);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        World fresh = new World(new Random(777));
+        assertTrue(TileGrids.equals(fresh.getWorld(), second.getWorld()));
+        assertEquals(fresh.getRoomCount(), second.getRoomCount());
+        assertEquals(fresh.getCorridorCount(), second.getCorridorCount());
+        assertEquals(fresh.getUsedTiles(), second.getUsedTiles());
+        assertEquals(gridBytes + 16L * fresh.getRoomCount(), cache.getCachedBytes());
+
+        // 移动一个副本的avatar不影响缓存和其他副本
+        TETile[][] before = second.getWorld();
+        assertTrue(first.moveAvatar('w') || first.moveAvatar('a') || first.moveAvatar('s') || first.moveAvatar('d'));
+        assertTrue(TileGrids.equals(before, second.getWorld()));
+        assertTrue(TileGrids.equals(before, cache.get(777).getWorld()));
+
+        // 预算只够两个世界，最久未使用的被淘汰；生成参数不同的世界分别缓存
+        cache.get(778);
+        cache.get(777, WorldConfig.DEFAULT.withGeneratorVersion(GeneratorVersion.V2));
+        assertEquals(2, cache.size());
+        long misses = cache.getMissCount();
+        cache.get(777);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void customSizeTest() {
+        World world = new World(new Random(42), 200, 120);
+        TETile[][] tiles = world.getWorld();
+
+        assertEquals(200, tiles.length);
+        assertEquals(120, tiles[0].length);
+        assertEquals(Tileset.AVATAR, tiles[world.getAvatarX()][world.getAvatarY()]);
+        int usedTiles = 0;
+        for (int x = 0; x < world.getWidth(); x++) {
+            for (int y = 0; y < world.getHeight(); y++) {
+                assertEquals(tiles[x][y], world.getTile(x, y));
+                if (tiles[x][y] != Tileset.NOTHING) {
+                    usedTiles++;
+                }
+            }
+        }
+        assertEquals(usedTiles, world.getUsedTiles());
+    }
+
+    @Test
+    public void generatorV2SpawnsOnFloorTest() {
+        WorldConfig config = WorldConfig.DEFAULT.withSize(400, 300).withGeneratorVersion(GeneratorVersion.V2);
+        for (long seed = 0; seed < 5; seed++) {
+            World world = new World(new Random(seed), config);
+            assertEquals(Tileset.AVATAR, world.getTile(world.getAvatarX(), world.getAvatarY()));
+            World again = new World(new Random(seed), config);
+            assertEquals(world.getAvatarX(), again.getAvatarX());
+            assertEquals(world.getAvatarY(), again.getAvatarY());
+        }
+
+        World world = new World(new Random(9), WorldConfig.DEFAULT.withGeneratorVersion(GeneratorVersion.V2));
+        String save = tempFile("savegame.bin");
+        SaveGame.save(save, world, 9);
+        assertEquals(world.getConfig(), SaveGame.load(save).world().getConfig());
+    }
+
+    @Test
+    public void minimumSizeWorldStopsPlacingRoomsTest() {
+        // 最小的世界放不下几个房间，放置房间的尝试次数有上限，生成不会卡住
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (long seed = 0; seed < 500; seed++) {
+                World world = new World(new Random(seed), World.MIN_WIDTH, World.MIN_HEIGHT);
+                assertTrue(world.getRoomCount() >= 1);
+                assertTrue(world.getRoomCount() <= World.MAX_PLACEMENT_ATTEMPTS);
+                // 生成在填充率达到一半、或者尝试次数用完时结束
+                assertTrue(world.isPlacementExhausted() || world.getFillRatio() >= 0.5);
+                assertEquals(world.getRoomCount() - 1, world.getCorridorCount());
+            }
+        });
+    }
+
+    @Test
+    public void nearestNeighborMstConnectsAllRoomsTest() {
+        WorldConfig config = WorldConfig.DEFAULT.withSize(300, 200).withMstMode(MstMode.NEAREST_NEIGHBORS);
+        for (long seed = 0; seed < 5; seed++) {
+            World world = new World(new Random(seed), config);
+            // 生成树恰好有房间数-1条边
+            assertEquals(world.getRoomCount() - 1, world.getCorridorCount());
+        }
+    }
+
+    @Test
+    public void chunkedWorldIsIndependentOfEvictionTest() {
+        long minimumBudget = (long) ChunkedWorld.MIN_LOADED_CHUNKS * ChunkedWorld.CHUNK_BYTES;
+        ChunkedWorld roomy = new ChunkedWorld(61, 1 << 20);
+        ChunkedWorld tight = new ChunkedWorld(61, minimumBudget, tempFile("chunks"));
+        assertEquals(roomy.getAvatarX(), tight.getAvatarX());
+        assertEquals(roomy.getAvatarY(), tight.getAvatarY());
+
+        tight.setTile(-5, 7, Tileset.FLOWER);
+        roomy.setTile(-5, 7, Tileset.FLOWER);
+        for (int x = -150; x < 150; x += 3) {
+            for (int y = -150; y < 150; y += 5) {
+                assertEquals(roomy.getTile(x, y), tight.getTile(x, y));
+            }
+        }
+        assertTrue(tight.getLoadedChunkCount() <= ChunkedWorld.MIN_LOADED_CHUNKS);
+        assertTrue(tight.getGeneratedChunkCount() > roomy.getGeneratedChunkCount());
+        // 修改过的区块被淘汰后从存档目录读回，而不是重新生成
+        assertEquals(Tileset.FLOWER, tight.getTile(-5, 7));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ChunkedWorld(61, minimumBudget - 1));
+    }
+
+    @Test
+    public void chunkedWorldRejectsChunksOfAnotherWorldTest() {
+        String directory = tempFile("chunks");
+        ChunkedWorld world = new ChunkedWorld(61, 1 << 20, directory);
+        world.setTile(-5, 7, Tileset.FLOWER);
+        world.flush();
+
+        assertEquals(Tileset.FLOWER, new ChunkedWorld(61, 1 << 20, directory).getTile(-5, 7));
+        // 区块(-1, 0)在avatar周围，构造时就会被读取
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedWorld(62, 1 << 20, directory));
+    }
+
+    @Test
+    public void chunkedWorldSpawnsOnSavedFloorTest() {
+        String directory = tempFile("chunks");
+        ChunkedWorld world = new ChunkedWorld(61, 1 << 20, directory);
+        int spawnX = world.getAvatarX();
+        int spawnY = world.getAvatarY();
+        world.setTile(spawnX, spawnY, Tileset.WALL);
+        world.flush();
+
+        // 保存的区块(0, 0)中出生点已经是墙了，avatar不能出现在墙里
+        ChunkedWorld reloaded = new ChunkedWorld(61, 1 << 20, directory);
+        assertFalse(reloaded.getAvatarX() == spawnX && reloaded.getAvatarY() == spawnY);
+        // 区块中只有出生点被改过，所以新位置上的tile可以在没有存档的同一个世界中查看
+        ChunkedWorld unsaved = new ChunkedWorld(61, 1 << 20);
+        assertEquals(Tileset.FLOOR, unsaved.getTile(reloaded.getAvatarX(), reloaded.getAvatarY()));
+    }
+
+    @Test
+    public void batchMatchesSequentialGenerationTest() {
+        Map<Long, Long> results = new ConcurrentHashMap<>();
+        try (WorldBatch batch = new WorldBatch(WorldConfig.DEFAULT, 4)) {
+            batch.generate(100, 164, result -> results.put(result.seed(),
+                    TileGrids.hash(result.world().getWorld())));
+        }
+
+        assertEquals(64, results.size());
+        for (long seed = 100; seed < 164; seed++) {
+            World world = new World(new Random(seed));
+            assertEquals(TileGrids.hash(world.getWorld()), (long) results.get(seed));
+        }
+    }
 
+    private String tempFile(String name) {
+        return tempDir.resolve(name).toString();
     }
 }
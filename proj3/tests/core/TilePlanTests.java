@@ -0,0 +1,68 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import tileengine.Tileset;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// TilePlan是包内私有的，所以这个测试放在core包中
+public class TilePlanTests {
+    @Test
+    public void parallelRasterizeMatchesSequentialTest() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long seed = 0; seed < 200; seed++) {
+                Random random = new Random(seed);
+                // 宽度跨越多个列块，格子数超过不再拆分的阈值，这样光栅化会真正拆分成并行的任务
+                int width = 64 + random.nextInt(600);
+                int height = 10 + random.nextInt(400);
+                TilePlan plan = randomPlan(random, width, height);
+
+                byte[] parallel = emptyGrid(width, height);
+                pool.submit(() -> plan.rasterize(parallel)).join();
+                int usedTiles = plan.usedTiles();
+                int floorTiles = plan.floorTiles();
+                int[] columnFloors = plan.columnFloors();
+
+                byte[] sequential = emptyGrid(width, height);
+                plan.rasterizeSequentially(sequential);
+                assertArrayEquals(sequential, parallel, "seed " + seed);
+                assertEquals(plan.usedTiles(), usedTiles, "seed " + seed);
+                assertEquals(plan.floorTiles(), floorTiles, "seed " + seed);
+                assertArrayEquals(plan.columnFloors(), columnFloors, "seed " + seed);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 随机交错记录房间和走廊，允许互相重叠，房间和走廊的墙都留在世界范围内
+    private static TilePlan randomPlan(Random random, int width, int height) {
+        TilePlan plan = new TilePlan(width, height);
+        int count = 1 + random.nextInt(200);
+        for (int i = 0; i < count; i++) {
+            if (random.nextBoolean()) {
+                int roomWidth = 1 + random.nextInt(Math.min(20, width - 2));
+                int roomHeight = 1 + random.nextInt(Math.min(20, height - 2));
+                int x = 1 + random.nextInt(width - 1 - roomWidth);
+                int y = 1 + random.nextInt(height - 1 - roomHeight);
+                plan.addRoom(x, y, roomWidth, roomHeight);
+            } else {
+                plan.addCorridor(2 + random.nextInt(width - 4), 2 + random.nextInt(height - 4),
+                        2 + random.nextInt(width - 4), 2 + random.nextInt(height - 4));
+            }
+        }
+        return plan;
+    }
+
+    private static byte[] emptyGrid(int width, int height) {
+        byte[] tiles = new byte[width * height];
+        Arrays.fill(tiles, (byte) Tileset.NOTHING.id());
+        return tiles;
+    }
+}